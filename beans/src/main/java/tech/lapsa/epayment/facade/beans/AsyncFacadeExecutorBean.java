@@ -0,0 +1,141 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+// threads of the async facade only, so its calls can't starve the outboxes, caches and batchers sharing the default
+// managed executor, a call over the queue capacity is rejected instead of waiting
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AsyncFacadeExecutorBean {
+
+    static final String PROPERTY_ASYNC_THREADS = "async-facade.threads";
+    static final String PROPERTY_ASYNC_QUEUE_CAPACITY = "async-facade.queue-capacity";
+
+    static final int DEFAULT_ASYNC_THREADS = 16;
+    static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1_000;
+
+    // MODIFIERS
+
+    // the task completes the stage, a task still queued when the bean stops completes it exceptionally with a
+    // RejectedExecutionException instead
+    public Future<?> submit(final Runnable task, final CompletableFuture<?> result)
+	    throws IllegalArgumentException, RejectedExecutionException {
+	MyObjects.requireNonNull(task, "task");
+	MyObjects.requireNonNull(result, "result");
+	final Call call = new Call(task, result);
+	calls.execute(call);
+	return call;
+    }
+
+    public ScheduledFuture<?> schedule(final Runnable task, final long delay, final TimeUnit unit)
+	    throws IllegalArgumentException, RejectedExecutionException {
+	MyObjects.requireNonNull(task, "task");
+	MyObjects.requireNonNull(unit, "unit");
+	return timers.schedule(task, delay, unit);
+    }
+
+    // READERS
+
+    public int getActiveCount() {
+	return calls.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+	return calls.getQueue().size();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private ThreadPoolExecutor calls;
+    private ScheduledExecutorService timers;
+
+    @PostConstruct
+    public void init() {
+	final int threads = ConfigProperties.intOf(epaymentConfig, PROPERTY_ASYNC_THREADS, DEFAULT_ASYNC_THREADS);
+	final int queueCapacity = ConfigProperties.intOf(epaymentConfig, PROPERTY_ASYNC_QUEUE_CAPACITY,
+		DEFAULT_ASYNC_QUEUE_CAPACITY);
+	if (threads <= 0 || queueCapacity <= 0)
+	    throw new EJBException("Async facade threads and queue capacity must be positive");
+	calls = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+		new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+	calls.allowCoreThreadTimeOut(true);
+	// timers only complete the stages, they never run a facade call
+	final ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(1, threadFactory);
+	scheduled.setRemoveOnCancelPolicy(true);
+	timers = scheduled;
+    }
+
+    // the timers keep running while the queued calls get their chance, the calls still queued after it are dropped
+    // and their stages completed, the running ones are not interrupted and complete their stages on their own
+    @PreDestroy
+    public void destroy() {
+	calls.shutdown();
+	try {
+	    if (!calls.awaitTermination(5, TimeUnit.SECONDS))
+		dropQueued();
+	} catch (final InterruptedException e) {
+	    dropQueued();
+	    Thread.currentThread().interrupt();
+	} finally {
+	    timers.shutdownNow();
+	}
+    }
+
+    private void dropQueued() {
+	final List<Runnable> dropped = new ArrayList<>();
+	calls.getQueue().drainTo(dropped);
+	for (final Runnable r : dropped) {
+	    final Call call = (Call) r;
+	    call.cancel(false);
+	    call.result.completeExceptionally(new RejectedExecutionException("Async facade stopped"));
+	}
+	if (!dropped.isEmpty())
+	    logger.WARNING.log("Async facade stopped, %1$d queued calls dropped", dropped.size());
+    }
+
+    // queued as is, so a call dropped from the queue still holds the stage it has to complete
+    private static final class Call extends FutureTask<Void> {
+
+	private final CompletableFuture<?> result;
+
+	private Call(final Runnable task, final CompletableFuture<?> result) {
+	    super(task, null);
+	    this.result = result;
+	}
+    }
+}
@@ -0,0 +1,112 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import tech.lapsa.epayment.dao.BankDAO;
+import tech.lapsa.epayment.domain.Bank;
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.patterns.dao.NotFound;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BankCacheBean {
+
+    static final String PROPERTY_BANK_CACHE_SIZE = "bank-cache.size";
+    static final String PROPERTY_BANK_CACHE_TTL_SECONDS = "bank-cache.ttl-seconds";
+    static final String PROPERTY_BANK_CACHE_NEGATIVE_TTL_SECONDS = "bank-cache.negative-ttl-seconds";
+    static final String PROPERTY_BANK_CACHE_PRELOAD_BINS = "bank-cache.preload-bins";
+
+    static final int DEFAULT_BANK_CACHE_SIZE = 10_000;
+    static final long DEFAULT_BANK_CACHE_TTL_SECONDS = TimeUnit.HOURS.toSeconds(12);
+    static final long DEFAULT_BANK_CACHE_NEGATIVE_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private TimedDAOsBean timedDAOs;
+
+    private BankDAO bankDAO;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private ExpiringCache<String, Bank> cache;
+
+    @PostConstruct
+    public void init() {
+	bankDAO = timedDAOs.getBankDAO();
+	final int size = ConfigProperties.intOf(epaymentConfig, PROPERTY_BANK_CACHE_SIZE, DEFAULT_BANK_CACHE_SIZE);
+	final long ttl = ConfigProperties.longOf(epaymentConfig, PROPERTY_BANK_CACHE_TTL_SECONDS,
+		DEFAULT_BANK_CACHE_TTL_SECONDS);
+	final long negativeTtl = ConfigProperties.longOf(epaymentConfig, PROPERTY_BANK_CACHE_NEGATIVE_TTL_SECONDS,
+		DEFAULT_BANK_CACHE_NEGATIVE_TTL_SECONDS);
+	cache = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(ttl), TimeUnit.SECONDS.toMillis(negativeTtl));
+
+	final List<String> preload = ConfigProperties.listOf(epaymentConfig, PROPERTY_BANK_CACHE_PRELOAD_BINS);
+	if (!preload.isEmpty())
+	    warmUp(preload);
+    }
+
+    // returns null for unknown BIN, failed remote calls are not cached
+    public Bank getByBIN(final String bin) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(bin, "bin");
+	return cache.get(bin, this::load);
+    }
+
+    public long getHitCount() {
+	return cache.getHits();
+    }
+
+    public long getMissCount() {
+	return cache.getMisses();
+    }
+
+    public int getSize() {
+	return cache.size();
+    }
+
+    public void invalidateAll() {
+	cache.invalidateAll();
+    }
+
+    // PRIVATE
+
+    private Bank load(final String bin) throws EJBException {
+	try {
+	    return bankDAO.getByBIN(bin);
+	} catch (final NotFound | IllegalArgument e) {
+	    return null;
+	}
+    }
+
+    private void warmUp(final List<String> bins) {
+	int loaded = 0;
+	for (final String bin : bins) {
+	    try {
+		if (getByBIN(bin) != null)
+		    loaded++;
+	    } catch (final RuntimeException e) {
+		logger.WARNING.log("Bank cache warm-up stopped at BIN '%1$s' - %2$s", bin, e.getMessage());
+		return;
+	    }
+	}
+	logger.INFO.log("Bank cache warmed up with %1$d of %2$d BINs", loaded, bins.size());
+    }
+}
@@ -0,0 +1,90 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.ejb.EJBException;
+
+import tech.lapsa.java.commons.function.MyObjects;
+
+// applies a function to items on an executor, at most a given number of them at a time, the calling thread takes
+// part in the work so a saturated executor slows the call down instead of failing it
+final class BoundedParallel {
+
+    private BoundedParallel() {
+    }
+
+    // results are in the order of the items, the first failure stops the items not started yet and is rethrown
+    static <T, R> List<R> map(final ExecutorService executor,
+	    final List<T> items,
+	    final int parallelism,
+	    final Function<? super T, ? extends R> function) throws IllegalArgumentException, EJBException {
+	MyObjects.requireNonNull(executor, "executor");
+	MyObjects.requireNonNull(items, "items");
+	MyObjects.requireNonNull(function, "function");
+	if (parallelism <= 0)
+	    throw new IllegalArgumentException("parallelism must be positive");
+
+	final int workers = Math.min(parallelism, items.size());
+	if (workers <= 1) {
+	    final List<R> results = new ArrayList<>(items.size());
+	    for (final T item : items)
+		results.add(function.apply(item));
+	    return results;
+	}
+
+	final Object[] results = new Object[items.size()];
+	final AtomicInteger next = new AtomicInteger();
+	final AtomicBoolean failed = new AtomicBoolean();
+	final Runnable worker = () -> {
+	    int i;
+	    while (!failed.get() && (i = next.getAndIncrement()) < results.length)
+		try {
+		    results[i] = function.apply(items.get(i));
+		} catch (final RuntimeException | Error e) {
+		    failed.set(true);
+		    throw e;
+		}
+	};
+
+	final List<Future<?>> running = new ArrayList<>(workers - 1);
+	try {
+	    for (int w = 1; w < workers; w++)
+		running.add(executor.submit(worker));
+	} catch (final RejectedExecutionException e) {
+	    // the workers already running and the caller do the rest
+	}
+
+	try {
+	    worker.run();
+	    for (final Future<?> f : running)
+		f.get();
+	} catch (final RuntimeException | Error e) {
+	    failed.set(true);
+	    throw e;
+	} catch (final InterruptedException e) {
+	    failed.set(true);
+	    Thread.currentThread().interrupt();
+	    throw new EJBException(e);
+	} catch (final ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException)
+		throw (RuntimeException) e.getCause();
+	    if (e.getCause() instanceof Error)
+		throw (Error) e.getCause();
+	    // it should not happens
+	    throw new EJBException(e.getCause().getMessage());
+	}
+
+	@SuppressWarnings("unchecked")
+	final List<R> list = (List<R>) Arrays.asList(results);
+	return new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,93 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+
+// evicts keys of a node-local cache on this node at once and once more after the current transaction completes,
+// other nodes are notified over the invalidation topic when the transaction commits
+final class CacheInvalidations {
+
+    // the message property naming the cache the keys of an invalidation message belong to
+    static final String MESSAGE_PROPERTY_CACHE = "cache";
+
+    private final String cacheName;
+    private final TransactionSynchronizationRegistry registry;
+    private final JmsEventNotificatorClient<String[]> notificator;
+    private final Consumer<String> evict;
+    private final MyLogger logger;
+    private final Object txResourceKey;
+    private final Properties messageProperties = new Properties();
+
+    CacheInvalidations(final String cacheName,
+	    final TransactionSynchronizationRegistry registry,
+	    final JmsEventNotificatorClient<String[]> notificator,
+	    final Consumer<String> evict,
+	    final MyLogger logger) {
+	this.cacheName = MyStrings.requireNonEmpty(cacheName, "cacheName");
+	this.registry = MyObjects.requireNonNull(registry, "registry");
+	this.notificator = MyObjects.requireNonNull(notificator, "notificator");
+	this.evict = MyObjects.requireNonNull(evict, "evict");
+	this.logger = MyObjects.requireNonNull(logger, "logger");
+	this.txResourceKey = CacheInvalidations.class.getName() + "." + cacheName;
+	messageProperties.setProperty(MESSAGE_PROPERTY_CACHE, cacheName);
+    }
+
+    void invalidate(final String key) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(key, "key");
+	evict.accept(key);
+
+	if (registry.getTransactionKey() == null) {
+	    final Set<String> single = new LinkedHashSet<>(1);
+	    single.add(key);
+	    publish(single);
+	    return;
+	}
+
+	@SuppressWarnings("unchecked")
+	Set<String> pending = (Set<String>) registry.getResource(txResourceKey);
+	if (pending == null) {
+	    final Set<String> created = new LinkedHashSet<>();
+	    registry.putResource(txResourceKey, created);
+	    registry.registerInterposedSynchronization(new Synchronization() {
+
+		@Override
+		public void beforeCompletion() {
+		    // sent within the transaction so the message is delivered only on commit
+		    if (registry.getTransactionStatus() == Status.STATUS_ACTIVE)
+			publish(created);
+		}
+
+		@Override
+		public void afterCompletion(final int status) {
+		    // a concurrent reader may have reloaded the uncommitted state meanwhile
+		    created.forEach(evict);
+		}
+	    });
+	    pending = created;
+	}
+	pending.add(key);
+    }
+
+    private void publish(final Set<String> keys) {
+	if (keys.isEmpty())
+	    return;
+	try {
+	    notificator.eventNotify(keys.toArray(new String[keys.size()]), messageProperties);
+	} catch (final RuntimeException e) {
+	    // other nodes fall back to the TTL
+	    logger.WARNING.log("Cache '%1$s' invalidation for %2$d keys was not published - %3$s", cacheName,
+		    keys.size(), e.getMessage());
+	}
+    }
+}
@@ -0,0 +1,60 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import tech.lapsa.java.commons.function.MyExceptions;
+import tech.lapsa.java.commons.function.MyStrings;
+
+final class ConfigProperties {
+
+    private ConfigProperties() {
+    }
+
+    static String stringOf(final Properties config, final String name, final String defaultValue) {
+	if (config == null)
+	    return defaultValue;
+	final String value = config.getProperty(name);
+	return MyStrings.empty(value) ? defaultValue : value.trim();
+    }
+
+    static int intOf(final Properties config, final String name, final int defaultValue) {
+	final String value = stringOf(config, name, null);
+	if (value == null)
+	    return defaultValue;
+	try {
+	    return Integer.parseInt(value);
+	} catch (final NumberFormatException e) {
+	    throw MyExceptions.illegalArgumentFormat("Property '%1$s' is not an integer - '%2$s'", name, value);
+	}
+    }
+
+    static long longOf(final Properties config, final String name, final long defaultValue) {
+	final String value = stringOf(config, name, null);
+	if (value == null)
+	    return defaultValue;
+	try {
+	    return Long.parseLong(value);
+	} catch (final NumberFormatException e) {
+	    throw MyExceptions.illegalArgumentFormat("Property '%1$s' is not a number - '%2$s'", name, value);
+	}
+    }
+
+    static boolean booleanOf(final Properties config, final String name, final boolean defaultValue) {
+	final String value = stringOf(config, name, null);
+	return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    static List<String> listOf(final Properties config, final String name) {
+	final String value = stringOf(config, name, null);
+	if (value == null)
+	    return Collections.emptyList();
+	return Arrays.stream(value.split(",")) //
+		.map(String::trim) //
+		.filter(MyStrings::nonEmpty) //
+		.collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,183 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.facade.PaymentMethod;
+
+// EpaymentFacadeBean calls run on the async facade's own executor, a stage is completed exceptionally with the
+// facade's exception, with a TimeoutException when the timeout passes first or with a CancellationException when
+// cancelled, in the last two cases a running reader is interrupted and a running modifier completes on its own
+@Stateless
+@LocalBean
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class EpaymentAsyncFacadeBean {
+
+    static final String PROPERTY_ASYNC_TIMEOUT_MILLIS = "async-facade.timeout-millis";
+
+    static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30_000;
+
+    static final String OUTCOME_TIMEOUT = "Timeout";
+    static final String OUTCOME_CANCELLED = "Cancelled";
+
+    // READERS
+
+    public CompletionStage<Invoice> getInvoiceByNumber(final String invoiceNumber) {
+	return getInvoiceByNumber(invoiceNumber, null);
+    }
+
+    public CompletionStage<Invoice> getInvoiceByNumber(final String invoiceNumber, final Duration timeout) {
+	return async("getInvoiceByNumber", () -> facade.getInvoiceByNumber(invoiceNumber), timeout, true);
+    }
+
+    public CompletionStage<InvoiceLookupResult> findInvoiceByNumber(final String invoiceNumber) {
+	return findInvoiceByNumber(invoiceNumber, null);
+    }
+
+    public CompletionStage<InvoiceLookupResult> findInvoiceByNumber(final String invoiceNumber,
+	    final Duration timeout) {
+	return async("findInvoiceByNumber", () -> facade.findInvoiceByNumber(invoiceNumber), timeout, true);
+    }
+
+    public CompletionStage<Boolean> hasInvoiceWithNumber(final String invoiceNumber) {
+	return hasInvoiceWithNumber(invoiceNumber, null);
+    }
+
+    public CompletionStage<Boolean> hasInvoiceWithNumber(final String invoiceNumber, final Duration timeout) {
+	return async("hasInvoiceWithNumber", () -> facade.hasInvoiceWithNumber(invoiceNumber), timeout, true);
+    }
+
+    public CompletionStage<URI> getDefaultPaymentURI(final String invoiceNumber) {
+	return getDefaultPaymentURI(invoiceNumber, null);
+    }
+
+    public CompletionStage<URI> getDefaultPaymentURI(final String invoiceNumber, final Duration timeout) {
+	return async("getDefaultPaymentURI", () -> facade.getDefaultPaymentURI(invoiceNumber), timeout, true);
+    }
+
+    public CompletionStage<PaymentMethod> qazkomHttpMethod(final URI postbackURI,
+	    final URI failureURI,
+	    final URI returnURI,
+	    final String invoiceNumber) {
+	return qazkomHttpMethod(postbackURI, failureURI, returnURI, invoiceNumber, null);
+    }
+
+    public CompletionStage<PaymentMethod> qazkomHttpMethod(final URI postbackURI,
+	    final URI failureURI,
+	    final URI returnURI,
+	    final String invoiceNumber,
+	    final Duration timeout) {
+	return async("qazkomHttpMethod",
+		() -> facade.qazkomHttpMethod(postbackURI, failureURI, returnURI, invoiceNumber), timeout, true);
+    }
+
+    // MODIFIERS
+
+    public CompletionStage<Void> completeWithQazkomPayment(final String postbackXml) {
+	return completeWithQazkomPayment(postbackXml, null);
+    }
+
+    public CompletionStage<Void> completeWithQazkomPayment(final String postbackXml, final Duration timeout) {
+	return async("completeWithQazkomPayment", () -> {
+	    facade.completeWithQazkomPayment(postbackXml);
+	    return null;
+	}, timeout, false);
+    }
+
+    public CompletionStage<QazkomPostbackResult> tryCompleteWithQazkomPayment(final String postbackXml) {
+	return tryCompleteWithQazkomPayment(postbackXml, null);
+    }
+
+    public CompletionStage<QazkomPostbackResult> tryCompleteWithQazkomPayment(final String postbackXml,
+	    final Duration timeout) {
+	return async("tryCompleteWithQazkomPayment", () -> facade.tryCompleteWithQazkomPayment(postbackXml), timeout,
+		false);
+    }
+
+    // PRIVATE
+
+    @EJB
+    private EpaymentFacadeBean facade;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @EJB
+    private AsyncFacadeExecutorBean executor;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private long defaultTimeoutMillis;
+
+    @PostConstruct
+    public void init() {
+	defaultTimeoutMillis = ConfigProperties.longOf(epaymentConfig, PROPERTY_ASYNC_TIMEOUT_MILLIS,
+		DEFAULT_ASYNC_TIMEOUT_MILLIS);
+    }
+
+    // a null timeout is the configured one, zero or less means none, a modifier is never interrupted so the
+    // transaction it began isn't rolled back half way through its remote calls
+    private <T> CompletableFuture<T> async(final String name, final Callable<T> call, final Duration timeout,
+	    final boolean interruptible) {
+	final long timeoutMillis = timeout == null ? defaultTimeoutMillis : timeout.toMillis();
+	final String metricsName = EpaymentAsyncFacadeBean.class.getSimpleName() + "." + name;
+
+	final CompletableFuture<T> result = new CompletableFuture<>();
+	final Future<?> running;
+	try {
+	    running = executor.submit(() -> {
+		try {
+		    result.complete(call.call());
+		} catch (final Exception | Error e) {
+		    result.completeExceptionally(e);
+		}
+	    }, result);
+	} catch (final RejectedExecutionException e) {
+	    result.completeExceptionally(e);
+	    return result;
+	}
+
+	final ScheduledFuture<?> timer;
+	try {
+	    timer = timeoutMillis <= 0 ? null : executor.schedule(() -> {
+		if (result.completeExceptionally(new TimeoutException(
+			String.format("%1$s timed out after %2$d ms", name, timeoutMillis))))
+		    metrics.recordOutcome(metricsName, OUTCOME_TIMEOUT);
+	    }, timeoutMillis, TimeUnit.MILLISECONDS);
+	} catch (final RejectedExecutionException e) {
+	    running.cancel(interruptible);
+	    result.completeExceptionally(e);
+	    return result;
+	}
+
+	result.whenComplete((value, e) -> {
+	    if (timer != null)
+		timer.cancel(false);
+	    if (result.isCancelled()) {
+		metrics.recordOutcome(metricsName, OUTCOME_CANCELLED);
+		running.cancel(interruptible);
+	    } else if (e instanceof TimeoutException)
+		running.cancel(interruptible);
+	});
+	return result;
+    }
+}
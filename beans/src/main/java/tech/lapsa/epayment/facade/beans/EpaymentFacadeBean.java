@@ -1,26 +1,41 @@
 package tech.lapsa.epayment.facade.beans;
 
+import java.io.InputStream;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Currency;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.EJBException;
+import javax.ejb.LocalBean;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
-import javax.inject.Inject;
-
-import tech.lapsa.epayment.dao.BankDAO.BankDAORemote;
-import tech.lapsa.epayment.dao.InvoiceDAO.InvoiceDAORemote;
-import tech.lapsa.epayment.dao.PaymentDAO.PaymentDAORemote;
-import tech.lapsa.epayment.dao.QazkomErrorDAO.QazkomErrorDAORemote;
-import tech.lapsa.epayment.dao.QazkomOrderDAO.QazkomOrderDAORemote;
-import tech.lapsa.epayment.dao.QazkomPaymentDAO.QazkomPaymentDAORemote;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.interceptor.Interceptors;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.epayment.dao.InvoiceDAO;
+import tech.lapsa.epayment.dao.PaymentDAO;
+import tech.lapsa.epayment.dao.QazkomErrorDAO;
+import tech.lapsa.epayment.dao.QazkomOrderDAO;
+import tech.lapsa.epayment.dao.QazkomPaymentDAO;
 import tech.lapsa.epayment.domain.Bank;
 import tech.lapsa.epayment.domain.Invoice;
 import tech.lapsa.epayment.domain.Invoice.InvoiceBuilder;
@@ -40,11 +55,9 @@ import tech.lapsa.epayment.facade.NotificationFacade.Notification;
 import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationChannel;
 import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationEventType;
 import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationRecipientType;
-import tech.lapsa.epayment.facade.NotificationFacade.NotificationFacadeLocal;
 import tech.lapsa.epayment.facade.PaymentMethod;
 import tech.lapsa.epayment.facade.PaymentMethod.Http;
 import tech.lapsa.epayment.shared.entity.InvoiceHasPaidJmsEvent;
-import tech.lapsa.epayment.shared.jms.EpaymentDestinations;
 import tech.lapsa.java.commons.exceptions.IllegalArgument;
 import tech.lapsa.java.commons.exceptions.IllegalState;
 import tech.lapsa.java.commons.function.MyExceptions;
@@ -54,25 +67,32 @@ import tech.lapsa.java.commons.function.MyObjects;
 import tech.lapsa.java.commons.function.MyOptionals;
 import tech.lapsa.java.commons.function.MyStrings;
 import tech.lapsa.java.commons.logging.MyLogger;
-import tech.lapsa.lapsa.jmsRPC.client.JmsDestination;
-import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
 import tech.lapsa.patterns.dao.NotFound;
 
 @Stateless(name = EpaymentFacadeBean.BEAN_NAME)
+@LocalBean
+@Interceptors(FacadeMetricsInterceptor.class)
 public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRemote {
 
     static final String JNDI_CONFIG = "epayment/resource/Configuration";
     static final String PROPERTY_DEFAULT_PAYMENT_URI_PATTERN = "default-payment-uri.pattern";
+    static final String PROPERTY_INVOICE_ACCEPT_CHUNK_SIZE = "invoice-accept.chunk-size";
+    static final String PROPERTY_INVOICE_ACCEPT_VALIDATION_PARALLELISM = "invoice-accept.validation-parallelism";
 
-    private QazkomSettings qazkomSettings;
+    static final String PROPERTY_INVOICE_BULK_READ_BATCH_SIZE = "invoice-bulk-read.batch-size";
+    static final String PROPERTY_INVOICE_BULK_READ_PARALLELISM = "invoice-bulk-read.parallelism";
+    static final String PROPERTY_QAZKOM_DOCUMENT_MAX_BYTES = "qazkom-document.max-bytes";
+    static final String PROPERTY_QAZKOM_DOCUMENT_LOG_CHARS = "qazkom-document.log-chars";
 
-    @Resource(lookup = QazkomSettings.JNDI_QAZKOM_CONFIG)
-    private Properties qazkomConfig;
+    static final int DEFAULT_INVOICE_ACCEPT_CHUNK_SIZE = 100;
+    static final int DEFAULT_INVOICE_ACCEPT_VALIDATION_PARALLELISM = 4;
+    static final int DEFAULT_INVOICE_BULK_READ_BATCH_SIZE = 200;
+    static final int DEFAULT_INVOICE_BULK_READ_PARALLELISM = 4;
+    static final int DEFAULT_QAZKOM_DOCUMENT_MAX_BYTES = 64 * 1024;
+    static final int DEFAULT_QAZKOM_DOCUMENT_LOG_CHARS = 256;
 
-    @PostConstruct
-    public void init() {
-	qazkomSettings = new QazkomSettings(qazkomConfig);
-    }
+    @EJB
+    private QazkomSettingsBean qazkom;
 
     // READERS
 
@@ -86,11 +106,47 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Map<String, URI> getDefaultPaymentURIs(final Collection<Invoice> invoices) throws IllegalArgument {
+	try {
+	    return _getDefaultPaymentURIs(invoices);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Invoice getInvoiceByNumber(final String invoiceNumber) throws IllegalArgument, InvoiceNotFound {
 	try {
-	    return _invoiceByNumber(invoiceNumber);
+	    return _invoiceByNumberCached(invoiceNumber);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // expected outcomes are returned instead of thrown
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public InvoiceLookupResult findInvoiceByNumber(final String invoiceNumber) {
+	return _invoiceLookup(invoiceNumber);
+    }
+
+    // unknown numbers are mapped to null, the map keeps the order of the given numbers
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Map<String, Invoice> getInvoicesByNumbers(final Collection<String> invoiceNumbers)
+	    throws IllegalArgument {
+	try {
+	    return _invoicesByNumbers(invoiceNumbers);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Map<String, InvoiceStatusSummary> getInvoiceStatuses(final Collection<String> invoiceNumbers)
+	    throws IllegalArgument {
+	try {
+	    return _invoiceStatuses(invoiceNumbers);
 	} catch (final IllegalArgumentException e) {
 	    throw new IllegalArgument(e);
 	}
@@ -169,6 +225,28 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<InvoiceAcceptResult> invoiceAcceptAll(final Collection<InvoiceBuilder> builders)
+	    throws IllegalArgument {
+	try {
+	    return _invoiceAcceptAll(builders);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // commits before returning so the order shared with concurrent callers is never rolled back, the settings
+    // are the snapshot the caller renders the payment form with
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public QazkomOrder qazkomOrderForInvoice(final Invoice forInvoice, final QazkomSettings qazkomSettings)
+	    throws IllegalArgument {
+	try {
+	    return _qazkomOrderForInvoice(forInvoice, qazkomSettings);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public void completeWithUnknownPayment(final String invoiceNumber,
@@ -188,11 +266,70 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    // duplicates of a postback completed recently get the same outcome without parsing, the payment itself is
+    // persisted in a transaction of its own
     @Override
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void completeWithQazkomPayment(final String postbackXml) throws IllegalArgument, IllegalState {
 	try {
-	    final Invoice i = _qazkomPayment(postbackXml);
+	    postbackIdempotency.complete(postbackXml, this::_qazkomPaymentOnce);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void completeWithQazkomPayment(final InputStream postback) throws IllegalArgument, IllegalState {
+	try {
+	    postbackIdempotency.complete(_qazkomDocumentRead(postback), this::_qazkomPaymentOnce);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // expected outcomes are returned instead of thrown, a replayed postback is answered without being parsed again
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public QazkomPostbackResult tryCompleteWithQazkomPayment(final String postbackXml) {
+	return _qazkomPaymentResult(postbackXml);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public QazkomPostbackResult tryCompleteWithQazkomPayment(final InputStream postback) {
+	final String postbackXml;
+	try {
+	    postbackXml = _qazkomDocumentRead(postback);
+	} catch (final IllegalArgumentException e) {
+	    return QazkomPostbackResult.rejected(null, e.getMessage());
+	}
+	return _qazkomPaymentResult(postbackXml);
+    }
+
+    // acknowledges once the raw postback is durably queued, processed inline when the queue is over its limit
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean enqueueQazkomPayment(final String postbackXml) throws IllegalArgument, IllegalState {
+	try {
+	    return postbacks.enqueue(postbackXml);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // parse and signature check only, nothing is persisted, used by the postback pipeline
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public VerifiedQazkomPayment verifyQazkomPayment(final String postbackXml) throws IllegalArgument {
+	try {
+	    return new VerifiedQazkomPayment(_qazkomPaymentParse(postbackXml));
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // the payment type is package-private so only a postback verified by this bean can be persisted
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void completeWithQazkomPayment(final VerifiedQazkomPayment verified) throws IllegalArgument, IllegalState {
+	try {
+	    MyObjects.requireNonNull(verified, "verified");
+	    final Invoice i = _qazkomPaymentPersist(verified.getPayment());
 	    _notifyExternalsAboutPaymentArrived(i);
 	} catch (final IllegalArgumentException e) {
 	    throw new IllegalArgument(e);
@@ -213,6 +350,16 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    // expired in the background by the sweeper, returns the number of invoices queued
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public int submitInvoicesExpiration(final Collection<String> invoiceNumbers) throws IllegalArgument {
+	try {
+	    return expirySweeper.submit(invoiceNumbers);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public String processQazkomFailure(final String failureXml) throws IllegalArgument {
@@ -223,44 +370,129 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    // collected with the failures arriving within a short window and processed as one batch
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public String processQazkomFailureBatched(final String failureXml) throws IllegalArgument {
+	try {
+	    return failureBatcher.process(failureXml);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // errors are grouped by order number so each order is loaded and saved once, every order in a transaction of
+    // its own so a failing order fails its own errors only
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public List<QazkomFailureResult> processQazkomFailures(final List<String> failureXmls) throws IllegalArgument {
+	try {
+	    return _processQazkomFailures(failureXmls);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<QazkomFailureResult> processQazkomFailureGroup(final QazkomFailureGroup group) throws IllegalArgument {
+	try {
+	    return _processQazkomFailureGroup(group);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String processQazkomFailure(final InputStream failure) throws IllegalArgument {
+	try {
+	    return _processQazkomFailure(_qazkomDocumentRead(failure));
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
     // PRIVATE
 
     private final MyLogger logger = MyLogger.newBuilder() //
 	    .withNameOf(EpaymentFacade.class) //
 	    .build();
 
-    // dao (remote)
+    // dao (remote, each call timed)
 
     @EJB
-    private InvoiceDAORemote invoiceDAO;
+    private TimedDAOsBean timedDAOs;
+
+    private InvoiceDAO invoiceDAO;
+    private PaymentDAO paymentDAO;
+    private QazkomOrderDAO qoDAO;
+    private QazkomPaymentDAO qpDAO;
+    private QazkomErrorDAO qeDAO;
+
+    // own (local)
 
     @EJB
-    private PaymentDAORemote paymentDAO;
+    private NotificationOutboxBean notifications;
+
+    @Resource
+    private SessionContext context;
 
     @EJB
-    private QazkomOrderDAORemote qoDAO;
+    private PaymentMethodCacheBean paymentMethods;
 
     @EJB
-    private QazkomPaymentDAORemote qpDAO;
+    private QazkomOrderFlightsBean orderFlights;
 
     @EJB
-    private QazkomErrorDAORemote qeDAO;
+    private InvoiceCacheBean invoiceCache;
 
-    // own (local)
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @EJB
+    private InvoiceExpirySweeperBean expirySweeper;
 
     @EJB
-    private NotificationFacadeLocal notifications;
+    private InvoiceExpiryBean expiry;
+
+    @EJB
+    private InvoiceAcceptBean invoiceAccepts;
+
+    @EJB
+    private QazkomPostbackPipelineBean postbacks;
+
+    @EJB
+    private PostbackIdempotencyBean postbackIdempotency;
+
+    @EJB
+    private QazkomFailureBatcherBean failureBatcher;
 
     @Resource(lookup = JNDI_CONFIG)
     private Properties epaymentConfig;
 
+    private PaymentURITemplate defaultPaymentURITemplate;
+    private int qazkomDocumentMaxBytes;
+    private int qazkomDocumentLogChars;
+
+    @PostConstruct
+    public void init() {
+	invoiceDAO = timedDAOs.getInvoiceDAO();
+	paymentDAO = timedDAOs.getPaymentDAO();
+	qoDAO = timedDAOs.getQazkomOrderDAO();
+	qpDAO = timedDAOs.getQazkomPaymentDAO();
+	qeDAO = timedDAOs.getQazkomErrorDAO();
+
+	final String pattern = epaymentConfig.getProperty(PROPERTY_DEFAULT_PAYMENT_URI_PATTERN);
+	defaultPaymentURITemplate = MyStrings.empty(pattern) ? null : PaymentURITemplate.compile(pattern);
+	qazkomDocumentMaxBytes = ConfigProperties.intOf(epaymentConfig, PROPERTY_QAZKOM_DOCUMENT_MAX_BYTES,
+		DEFAULT_QAZKOM_DOCUMENT_MAX_BYTES);
+	qazkomDocumentLogChars = ConfigProperties.intOf(epaymentConfig, PROPERTY_QAZKOM_DOCUMENT_LOG_CHARS,
+		DEFAULT_QAZKOM_DOCUMENT_LOG_CHARS);
+    }
+
     private boolean _hasInvoiceWithNumber(final String invoiceNumber) throws IllegalArgumentException {
-	try {
-	    _invoiceByNumber(invoiceNumber);
-	    return true;
-	} catch (final InvoiceNotFound e) {
-	    return false;
-	}
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	return invoiceCache.exists(invoiceNumber);
     }
 
     private Invoice _invoiceByNumber(final String invoiceNumber) throws IllegalArgumentException, InvoiceNotFound {
@@ -275,63 +507,229 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	}
     }
 
+    // each caller gets its own copy of the cached snapshot and is free to modify it
+    private Invoice _invoiceByNumberCached(final String invoiceNumber)
+	    throws IllegalArgumentException, InvoiceNotFound {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	final Invoice i = invoiceCache.getByNumber(invoiceNumber);
+	if (i == null)
+	    throw MyExceptions.format(InvoiceNotFound::new, "Invoice not found with number %1$s", invoiceNumber);
+	return i;
+    }
+
+    // the same copy as _invoiceByNumberCached, with not found and invalid numbers as results instead of exceptions
+    private InvoiceLookupResult _invoiceLookup(final String invoiceNumber) {
+	if (MyStrings.empty(invoiceNumber))
+	    return InvoiceLookupResult.invalid(invoiceNumber, "Invoice number is empty");
+	final Invoice i = invoiceCache.getByNumber(invoiceNumber);
+	return i == null //
+		? InvoiceLookupResult.notFound(invoiceNumber)
+		: InvoiceLookupResult.found(invoiceNumber, i);
+    }
+
+    private Map<String, Invoice> _invoicesByNumbers(final Collection<String> invoiceNumbers)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoiceNumbers, "invoiceNumbers");
+	final List<String> numbers = new ArrayList<>(new LinkedHashSet<>(invoiceNumbers));
+	numbers.forEach(number -> MyStrings.requireNonEmpty(number, "invoiceNumber"));
+
+	final int batchSize = ConfigProperties.intOf(epaymentConfig, PROPERTY_INVOICE_BULK_READ_BATCH_SIZE,
+		DEFAULT_INVOICE_BULK_READ_BATCH_SIZE);
+	if (batchSize <= 0)
+	    throw MyExceptions.illegalArgumentFormat("Invalid invoice bulk read batch size %1$d", batchSize);
+
+	final int parallelism = ConfigProperties.intOf(epaymentConfig, PROPERTY_INVOICE_BULK_READ_PARALLELISM,
+		DEFAULT_INVOICE_BULK_READ_PARALLELISM);
+
+	// the executor threads can't see the caller's transaction, so a transactional caller reads in its own thread
+	if (numbers.size() <= batchSize || parallelism <= 1 || registry.getTransactionKey() != null)
+	    return _invoicesBatch(numbers);
+
+	// batches are read concurrently, there is no bulk finder on the DAO
+	final List<List<String>> batches = new ArrayList<>();
+	for (int from = 0; from < numbers.size(); from += batchSize)
+	    batches.add(numbers.subList(from, Math.min(from + batchSize, numbers.size())));
+
+	final Map<String, Invoice> invoices = new LinkedHashMap<>(numbers.size() * 4 / 3 + 1);
+	BoundedParallel.map(executor, batches, parallelism, this::_invoicesBatch).forEach(invoices::putAll);
+	return invoices;
+    }
+
+    private Map<String, Invoice> _invoicesBatch(final List<String> invoiceNumbers) {
+	final Map<String, Invoice> invoices = new LinkedHashMap<>(invoiceNumbers.size() * 4 / 3 + 1);
+	for (final String invoiceNumber : invoiceNumbers)
+	    invoices.put(invoiceNumber, invoiceCache.getByNumber(invoiceNumber));
+	return invoices;
+    }
+
+    private Map<String, InvoiceStatusSummary> _invoiceStatuses(final Collection<String> invoiceNumbers)
+	    throws IllegalArgumentException {
+	final Map<String, Invoice> invoices = _invoicesByNumbers(invoiceNumbers);
+	final Map<String, InvoiceStatusSummary> statuses = new LinkedHashMap<>(invoices.size() * 4 / 3 + 1);
+	invoices.forEach((number, invoice) -> statuses.put(number, invoice == null //
+		? InvoiceStatusSummary.notFound(number)
+		: InvoiceStatusSummary.of(invoice)));
+	return statuses;
+    }
+
     private URI _getDefaultPaymentURI(final String invoiceNumber) throws IllegalArgumentException, InvoiceNotFound {
-	final Invoice invoice = _invoiceByNumber(invoiceNumber);
+	final Invoice invoice = _invoiceByNumberCached(invoiceNumber);
 	return _getDefaultPaymentURI(invoice);
     }
 
     private URI _getDefaultPaymentURI(final Invoice invoice) throws IllegalArgumentException {
 	MyObjects.requireNonNull(invoice, "invoice");
 
-	final String pattern = epaymentConfig.getProperty(PROPERTY_DEFAULT_PAYMENT_URI_PATTERN);
+	// it should not happens
+	MyObjects.requireNonNull(EJBException::new, defaultPaymentURITemplate, PROPERTY_DEFAULT_PAYMENT_URI_PATTERN);
 	try {
-	    final String parsed = pattern //
-		    .replace("@INVOICE_ID@", invoice.getNumber()) //
-		    .replace("@INVOICE_NUMBER@", invoice.getNumber()) //
-		    .replace("@LANG@", invoice.getConsumerPreferLanguage().getTag());
-	    return new URI(parsed);
-	} catch (final URISyntaxException | NullPointerException e) {
+	    return defaultPaymentURITemplate.render(invoice);
+	} catch (final IllegalArgumentException | NullPointerException e) {
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
     }
 
+    private Map<String, URI> _getDefaultPaymentURIs(final Collection<Invoice> invoices)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoices, "invoices");
+	final Map<String, URI> uris = new LinkedHashMap<>(invoices.size() * 4 / 3 + 1);
+	for (final Invoice invoice : invoices)
+	    uris.put(MyObjects.requireNonNull(invoice, "invoice").getNumber(), _getDefaultPaymentURI(invoice));
+	return uris;
+    }
+
     private Invoice _invoiceAccept(final InvoiceBuilder builder) throws IllegalArgumentException {
 	MyObjects.requireNonNull(builder, "builder");
 
-	final Invoice temp;
-	try {
-	    temp = builder.build(qoDAO::isValidUniqueNumber);
-	} catch (NumberOfAttemptsExceedException | NonUniqueNumberException e1) {
-	    // it should not happens
-	    throw new EJBException(e1.getMessage());
-	}
-
 	final Invoice i;
 	try {
-	    i = invoiceDAO.save(temp);
+	    i = invoiceAccepts.save(_invoiceBuild(builder, qoDAO::isValidUniqueNumber));
 	} catch (final IllegalArgument e) {
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
 
-	if (i.optionalConsumerEmail().isPresent()) {
-	    i.unlazy();
+	final Optional<Notification> notification = _paymentLinkNotification(i);
+	if (notification.isPresent()) {
+	    notifications.enqueue(notification.get());
+	    logger.FINE.log("Payment accepted notification enqueued '%1$s'", i);
+	}
+	return i;
+    }
+
+    private List<InvoiceAcceptResult> _invoiceAcceptAll(final Collection<InvoiceBuilder> builders)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(builders, "builders");
+
+	final int chunkSize = ConfigProperties.intOf(epaymentConfig, PROPERTY_INVOICE_ACCEPT_CHUNK_SIZE,
+		DEFAULT_INVOICE_ACCEPT_CHUNK_SIZE);
+	if (chunkSize <= 0)
+	    throw MyExceptions.illegalArgumentFormat("Invalid invoice accept chunk size %1$d", chunkSize);
+	final int parallelism = ConfigProperties.intOf(epaymentConfig, PROPERTY_INVOICE_ACCEPT_VALIDATION_PARALLELISM,
+		DEFAULT_INVOICE_ACCEPT_VALIDATION_PARALLELISM);
+	if (parallelism <= 0)
+	    throw MyExceptions.illegalArgumentFormat("Invalid invoice accept validation parallelism %1$d",
+		    parallelism);
+
+	final List<InvoiceBuilder> all = new ArrayList<>(builders);
+	final List<InvoiceAcceptResult> results = new ArrayList<>(all.size());
+	final Set<String> acceptedNumbers = new HashSet<>();
+	for (int from = 0; from < all.size(); from += chunkSize) {
+	    final int to = Math.min(from + chunkSize, all.size());
+	    final InvoiceAcceptChunk chunk = _invoiceAcceptChunkBuild(all.subList(from, to), from, acceptedNumbers,
+		    parallelism);
 	    try {
-		notifications.send(Notification.builder() //
-			.withChannel(NotificationChannel.EMAIL) //
-			.withEvent(NotificationEventType.PAYMENT_LINK) //
-			.withRecipient(NotificationRecipientType.REQUESTER) //
-			.withProperty("paymentUrl", _getDefaultPaymentURI(i).toString()) //
-			.forEntity(i) //
-			.build());
-	    } catch (final IllegalArgument e) {
-		// it should not happens
-		throw new EJBException(e.getMessage());
+		final List<InvoiceAcceptResult> chunkResults = invoiceAccepts.acceptChunk(chunk);
+		results.addAll(chunkResults);
+		chunkResults.stream() //
+			.filter(InvoiceAcceptResult::isAccepted) //
+			.map(r -> r.getInvoice().getNumber()) //
+			.forEach(acceptedNumbers::add);
+	    } catch (final IllegalArgument | RuntimeException e) {
+		// the whole chunk is rolled back, invoices failed before it keep their own reason
+		logger.INFO.log("Invoice accept chunk %1$d-%2$d failed - %3$s", from, to - 1, e.getMessage());
+		final List<InvoiceAcceptResult> chunkResults = chunk.getFailures();
+		chunk.getInvoices().keySet()
+			.forEach(index -> chunkResults.add(InvoiceAcceptResult.failed(index, e.getMessage())));
+		chunkResults.sort(Comparator.comparingInt(InvoiceAcceptResult::getIndex));
+		results.addAll(chunkResults);
 	    }
-	    logger.FINE.log("Payment accepted notification sent '%1$s'", i);
 	}
-	return i;
+
+	logger.FINE.log("Invoices accepted in bulk %1$d of %2$d",
+		results.stream().filter(InvoiceAcceptResult::isAccepted).count(), all.size());
+	return results;
+    }
+
+    // the invoices are built with numbers unique within the batch first, the numbers are then checked against the
+    // DAO concurrently, there is no multi-number finder on it, and only the invoices whose number turned out to be
+    // taken are built again
+    private InvoiceAcceptChunk _invoiceAcceptChunkBuild(final List<InvoiceBuilder> builders,
+	    final int firstIndex,
+	    final Set<String> acceptedNumbers,
+	    final int parallelism) {
+	final InvoiceAcceptChunk chunk = new InvoiceAcceptChunk(this::_paymentLinkNotification);
+	final Set<String> chunkNumbers = new HashSet<>();
+	final Predicate<String> batchUnique = number -> !acceptedNumbers.contains(number)
+		&& !chunkNumbers.contains(number);
+
+	final Map<Integer, Invoice> built = new LinkedHashMap<>(builders.size() * 4 / 3 + 1);
+	for (int offset = 0; offset < builders.size(); offset++) {
+	    final int index = firstIndex + offset;
+	    try {
+		final Invoice temp = MyObjects.requireNonNull(builders.get(offset), "builder").build(batchUnique);
+		chunkNumbers.add(temp.getNumber());
+		built.put(index, temp);
+	    } catch (final IllegalArgumentException | NumberOfAttemptsExceedException | NonUniqueNumberException e) {
+		chunk.fail(index, e.getMessage());
+	    }
+	}
+
+	final List<Integer> indexes = new ArrayList<>(built.keySet());
+	final List<Boolean> unique = BoundedParallel.map(executor, indexes, parallelism,
+		index -> qoDAO.isValidUniqueNumber(built.get(index).getNumber()));
+
+	final Predicate<String> numberValidator = batchUnique.and(qoDAO::isValidUniqueNumber);
+	for (int k = 0; k < indexes.size(); k++) {
+	    final int index = indexes.get(k);
+	    if (unique.get(k)) {
+		chunk.add(index, built.get(index));
+		continue;
+	    }
+	    // a generated number is generated again, a given one fails the invoice
+	    try {
+		final Invoice temp = builders.get(index - firstIndex).build(numberValidator);
+		chunkNumbers.add(temp.getNumber());
+		chunk.add(index, temp);
+	    } catch (final NumberOfAttemptsExceedException | NonUniqueNumberException e) {
+		chunk.fail(index, e.getMessage());
+	    }
+	}
+	return chunk;
+    }
+
+    private Invoice _invoiceBuild(final InvoiceBuilder builder, final Predicate<String> numberValidator)
+	    throws IllegalArgumentException {
+	try {
+	    return builder.build(numberValidator);
+	} catch (NumberOfAttemptsExceedException | NonUniqueNumberException e1) {
+	    // it should not happens
+	    throw new EJBException(e1.getMessage());
+	}
+    }
+
+    private Optional<Notification> _paymentLinkNotification(final Invoice i) throws IllegalArgumentException {
+	if (!i.optionalConsumerEmail().isPresent())
+	    return Optional.empty();
+	i.unlazy();
+	return Optional.of(Notification.builder() //
+		.withChannel(NotificationChannel.EMAIL) //
+		.withEvent(NotificationEventType.PAYMENT_LINK) //
+		.withRecipient(NotificationRecipientType.REQUESTER) //
+		.withProperty("paymentUrl", _getDefaultPaymentURI(i).toString()) //
+		.forEntity(i) //
+		.build());
     }
 
     private void _cancelPayment(String invoiceNumber, String reason) throws IllegalArgumentException, IllegalStateException, InvoiceNotFound {
@@ -355,6 +753,7 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
+	invoiceCache.invalidate(invoiceNumber);
     }
 
 
@@ -364,18 +763,14 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
 
 	final Invoice i = _invoiceByNumber(invoiceNumber);
-
 	try {
-	    i.expire();
-	} catch (final IllegalState e) {
-	    // payment is inconsistent
-	    throw e.getRuntime();
-	}
-	try {
-	    invoiceDAO.save(i);
+	    expiry.expire(i);
 	} catch (final IllegalArgument e) {
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
+	} catch (final IllegalState e) {
+	    // payment is inconsistent
+	    throw e.getRuntime();
 	}
     }
 
@@ -434,13 +829,76 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	return _invoiceHasPaidBy(i1, p2);
     }
 
-    private Invoice _qazkomPayment(final String postbackXml)
-	    throws IllegalArgumentException, IllegalStateException {
+    private String _qazkomDocumentRead(final InputStream document) throws IllegalArgumentException {
+	return QazkomDocuments.read(document, qazkomDocumentMaxBytes);
+    }
+
+    private String _qazkomPaymentOnce(final String postbackXml) throws IllegalArgument, IllegalState {
+	final VerifiedQazkomPayment p;
+	try {
+	    p = new VerifiedQazkomPayment(_qazkomPaymentParse(postbackXml));
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+	final String orderNumber = p.getOrderNumber();
+	if (MyStrings.nonEmpty(orderNumber) && postbackIdempotency.isCompletedOrder(orderNumber)) {
+	    logger.INFO.log("Postback for order '%1$s' is already completed", orderNumber);
+	    return orderNumber;
+	}
+	context.getBusinessObject(EpaymentFacadeBean.class).completeWithQazkomPayment(p);
+	return orderNumber;
+    }
+
+    private QazkomPostbackResult _qazkomPaymentResult(final String postbackXml) {
+	if (MyStrings.empty(postbackXml))
+	    return QazkomPostbackResult.rejected(null, "Postback is empty");
+	if (postbackIdempotency.isDuplicate(postbackXml))
+	    return QazkomPostbackResult.duplicate(null);
+
+	final VerifiedQazkomPayment p;
+	try {
+	    p = new VerifiedQazkomPayment(_qazkomPaymentParse(postbackXml));
+	} catch (final IllegalArgumentException e) {
+	    return QazkomPostbackResult.rejected(null, e.getMessage());
+	}
+	final String orderNumber = p.getOrderNumber();
+	if (MyStrings.nonEmpty(orderNumber) && postbackIdempotency.isCompletedOrder(orderNumber))
+	    return QazkomPostbackResult.duplicate(orderNumber);
+
+	try {
+	    postbackIdempotency.complete(postbackXml, x -> {
+		context.getBusinessObject(EpaymentFacadeBean.class).completeWithQazkomPayment(p);
+		return orderNumber;
+	    });
+	} catch (final IllegalArgument e) {
+	    return QazkomPostbackResult.rejected(orderNumber, e.getMessage());
+	} catch (final IllegalState e) {
+	    // a replay older than the idempotency window is told apart on this path only
+	    return _qazkomPaymentProcessed(orderNumber) //
+		    ? QazkomPostbackResult.duplicate(orderNumber)
+		    : QazkomPostbackResult.conflict(orderNumber, e.getMessage());
+	}
+	return QazkomPostbackResult.accepted(orderNumber);
+    }
+
+    private boolean _qazkomPaymentProcessed(final String orderNumber) {
+	if (MyStrings.empty(orderNumber))
+	    return false;
+	try {
+	    return !qpDAO.isUniqueNumber(orderNumber);
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+    }
+
+    private QazkomPayment _qazkomPaymentParse(final String postbackXml) throws IllegalArgumentException {
 
 	MyStrings.requireNonEmpty(postbackXml, "postbackXml");
 
-	logger.INFO.log("New postback '%1$s'", postbackXml);
+	logger.INFO.log("New postback '%1$s'", QazkomDocuments.abbreviate(postbackXml, qazkomDocumentLogChars));
 
+	final QazkomSettings qazkomSettings = qazkom.getSettings();
 	final QazkomPaymentBuilder builder = QazkomPayment.builder();
 
 	try {
@@ -453,7 +911,13 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    throw new EJBException(e.getMessage());
 	}
 
-	final QazkomPayment p1 = builder.build();
+	return builder.build();
+    }
+
+    private Invoice _qazkomPaymentPersist(final QazkomPayment p1)
+	    throws IllegalArgumentException, IllegalStateException {
+
+	MyObjects.requireNonNull(p1, "payment");
 
 	final String orderNumber = p1.getOrderNumber();
 	MyStrings.requireNonEmpty(orderNumber, "orderNumber");
@@ -509,6 +973,7 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
+	paymentMethods.invalidateOrder(orderNumber);
 
 	final Invoice i = o2.getForInvoice();
 	final QazkomPayment p3 = o2.getPayment();
@@ -545,22 +1010,18 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
+	invoiceCache.invalidate(i2.getNumber());
 
 	logger.INFO.log("Ivoice has paid successfuly '%1$s'", i2);
 
 	if (i2.optionalConsumerEmail().isPresent()) {
 	    i2.unlazy();
-	    try {
-		notifications.send(Notification.builder() //
-			.withChannel(NotificationChannel.EMAIL) //
-			.withEvent(NotificationEventType.PAYMENT_SUCCESS) //
-			.withRecipient(NotificationRecipientType.REQUESTER) //
-			.forEntity(i2) //
-			.build());
-	    } catch (final IllegalArgument e) {
-		// it should not happens
-		throw new EJBException(e.getMessage());
-	    }
+	    notifications.enqueue(Notification.builder() //
+		    .withChannel(NotificationChannel.EMAIL) //
+		    .withEvent(NotificationEventType.PAYMENT_SUCCESS) //
+		    .withRecipient(NotificationRecipientType.REQUESTER) //
+		    .forEntity(i2) //
+		    .build());
 	}
 
 	return i2;
@@ -585,6 +1046,13 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	MyObjects.requireNonNull(returnURI, "returnURI");
 	MyObjects.requireNonNull(forInvoice, "forInvoice");
 
+	final PaymentMethod cached = paymentMethods.get(postbackURI, failureURI, returnURI, forInvoice);
+	if (cached != null)
+	    return cached;
+
+	// one snapshot for the order and the form, a reload in between would mix two merchants
+	final QazkomSettings qazkomSettings = qazkom.getSettings();
+
 	final QazkomOrder o;
 	{
 	    QazkomOrder temp;
@@ -595,25 +1063,16 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 		throw new EJBException(e.getMessage());
 	    } catch (final NotFound e) {
 		// еще небыло ордеров
-		try {
-		    temp = QazkomOrder.builder() //
-			    .forInvoice(forInvoice) //
-			    .withGeneratedNumber() //
-			    .withMerchant(qazkomSettings.QAZKOM_MERCHANT_ID, //
-				    qazkomSettings.QAZKOM_MERCHANT_NAME, //
-				    qazkomSettings.QAZKOM_MERCHANT_CERTIFICATE, //
-				    qazkomSettings.QAZKOM_MERCHANT_key) //
-			    .build(qoDAO::isValidUniqueNumber);
-		} catch (IllegalArgumentException | NumberOfAttemptsExceedException | NonUniqueNumberException e1) {
-		    // it should not happens
-		    throw new EJBException(e1.getMessage());
-		}
-		try {
-		    temp = qoDAO.save(temp);
-		} catch (IllegalArgument e1) {
-		    // it should not happens
-		    throw new EJBException(e1.getMessage());
-		}
+		// concurrent page loads for the same invoice share one new order
+		final EpaymentFacadeBean self = context.getBusinessObject(EpaymentFacadeBean.class);
+		temp = orderFlights.createOnce(forInvoice.getNumber(), () -> {
+		    try {
+			return self.qazkomOrderForInvoice(forInvoice, qazkomSettings);
+		    } catch (final IllegalArgument e1) {
+			// it should not happens
+			throw new EJBException(e1.getMessage());
+		    }
+		});
 	    }
 	    o = temp;
 	}
@@ -630,7 +1089,9 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 			    "appendix", o.getCartDoc().getBase64Xml(), //
 			    "BackLink", returnURI.toString() //
 		    ));
-	    return new PaymentMethod(http);
+	    final PaymentMethod pm = new PaymentMethod(http);
+	    paymentMethods.put(postbackURI, failureURI, returnURI, forInvoice, o.getNumber(), pm);
+	    return pm;
 	} catch (final IllegalArgumentException e) {
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
@@ -638,24 +1099,55 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 
     }
 
+    // an order committed since the caller looked is reused
+    private QazkomOrder _qazkomOrderForInvoice(final Invoice forInvoice, final QazkomSettings qazkomSettings)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(forInvoice, "forInvoice");
+	MyObjects.requireNonNull(qazkomSettings, "qazkomSettings");
+	try {
+	    return qoDAO.getLatestForInvoice(forInvoice);
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	} catch (final NotFound e) {
+	    return _qazkomOrderCreate(forInvoice, qazkomSettings);
+	}
+    }
+
+    private QazkomOrder _qazkomOrderCreate(final Invoice forInvoice, final QazkomSettings qazkomSettings) {
+	final QazkomOrder temp;
+	try {
+	    temp = QazkomOrder.builder() //
+		    .forInvoice(forInvoice) //
+		    .withGeneratedNumber() //
+		    .withMerchant(qazkomSettings.QAZKOM_MERCHANT_ID, //
+			    qazkomSettings.QAZKOM_MERCHANT_NAME, //
+			    qazkomSettings.QAZKOM_MERCHANT_CERTIFICATE, //
+			    qazkomSettings.QAZKOM_MERCHANT_key) //
+		    .build(qoDAO::isValidUniqueNumber);
+	} catch (IllegalArgumentException | NumberOfAttemptsExceedException | NonUniqueNumberException e1) {
+	    // it should not happens
+	    throw new EJBException(e1.getMessage());
+	}
+	try {
+	    return qoDAO.save(temp);
+	} catch (IllegalArgument e1) {
+	    // it should not happens
+	    throw new EJBException(e1.getMessage());
+	}
+    }
+
     private String _processQazkomFailure(final String failureXml) throws IllegalArgumentException {
 
 	MyStrings.requireNonEmpty(failureXml, "failureXml");
 
-	logger.INFO.log("New failure '%1$s'", failureXml);
+	logger.INFO.log("New failure '%1$s'", QazkomDocuments.abbreviate(failureXml, qazkomDocumentLogChars));
 
-	final QazkomError qeNew = QazkomError.builder() //
+	// saved once, after it is attached to its order
+	final QazkomError qe = QazkomError.builder() //
 		.fromRawXml(failureXml) //
 		.build();
 
-	final QazkomError qe;
-	try {
-	    qe = qeDAO.save(qeNew);
-	} catch (final IllegalArgument e) {
-	    // it should not happens
-	    throw e.getRuntime();
-	}
-
 	final String orderNumber = qe.getOrderNumber();
 
 	final QazkomOrder qo;
@@ -683,6 +1175,7 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    // it should not happens
 	    throw new EJBException(e.getMessage());
 	}
+	paymentMethods.invalidateOrder(orderNumber);
 	try {
 	    qeDAO.save(qe);
 	} catch (final IllegalArgument e) {
@@ -693,9 +1186,105 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	return qe.getMessage();
     }
 
-    @Inject
-    @JmsDestination(EpaymentDestinations.INVOICE_HAS_PAID)
-    private JmsEventNotificatorClient<InvoiceHasPaidJmsEvent> invoiceHasPaidEventNotificatorClient;
+    private List<QazkomFailureResult> _processQazkomFailures(final List<String> failureXmls)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(failureXmls, "failureXmls");
+
+	final QazkomFailureResult[] results = new QazkomFailureResult[failureXmls.size()];
+	final Map<String, QazkomFailureGroup> byOrder = new LinkedHashMap<>();
+
+	// parsed once here and grouped by the order number, a failure that can't be parsed fails alone
+	for (int index = 0; index < failureXmls.size(); index++) {
+	    final String failureXml = failureXmls.get(index);
+	    final QazkomError qe;
+	    try {
+		MyStrings.requireNonEmpty(failureXml, "failureXml");
+		logger.INFO.log("New failure '%1$s'", QazkomDocuments.abbreviate(failureXml, qazkomDocumentLogChars));
+		qe = QazkomError.builder() //
+			.fromRawXml(failureXml) //
+			.build();
+	    } catch (final IllegalArgumentException e) {
+		results[index] = QazkomFailureResult.failed(index, e.getMessage());
+		continue;
+	    }
+	    byOrder.computeIfAbsent(qe.getOrderNumber(), QazkomFailureGroup::new).add(index, qe);
+	}
+
+	final EpaymentFacadeBean self = context.getBusinessObject(EpaymentFacadeBean.class);
+	for (final QazkomFailureGroup group : byOrder.values()) {
+	    try {
+		for (final QazkomFailureResult result : self.processQazkomFailureGroup(group))
+		    results[result.getIndex()] = result;
+	    } catch (final IllegalArgument | RuntimeException e) {
+		logger.WARNING.log("Failures of QazkomOrder '%1$s' rolled back - %2$s", group.getOrderNumber(),
+			e.getMessage());
+		group.getIndexes().forEach(index -> results[index] = QazkomFailureResult.failed(index, e.getMessage()));
+	    }
+	}
+
+	return Arrays.asList(results);
+    }
+
+    private List<QazkomFailureResult> _processQazkomFailureGroup(final QazkomFailureGroup group)
+	    throws IllegalArgumentException {
+	MyObjects.requireNonNull(group, "group");
+	final String orderNumber = group.getOrderNumber();
+	final List<Integer> indexes = group.getIndexes();
+	final List<QazkomFailureResult> results = new ArrayList<>(indexes.size());
+
+	final QazkomOrder qo;
+	try {
+	    qo = qoDAO.getByNumber(orderNumber);
+	} catch (NotFound | IllegalArgument e) {
+	    final String message = String.format("No QazkomOrder found or order number is invlaid - '%1$s'",
+		    orderNumber);
+	    indexes.forEach(index -> results.add(QazkomFailureResult.failed(index, message)));
+	    return results;
+	}
+
+	// attached before anything is saved, so an inconsistent error fails alone and leaves nothing behind, then
+	// the order and each attached error are saved once
+	final List<QazkomError> attached = new ArrayList<>(indexes.size());
+	for (int i = 0; i < indexes.size(); i++) {
+	    final int index = indexes.get(i);
+	    final QazkomError qe = group.getErrors().get(i);
+	    try {
+		qo.attachError(qe);
+	    } catch (final IllegalArgumentException e) {
+		// it should not happens
+		throw new EJBException(e.getMessage());
+	    } catch (final IllegalArgument e) {
+		// error is inconsistent
+		results.add(QazkomFailureResult.failed(index, e.getMessage()));
+		continue;
+	    }
+	    results.add(QazkomFailureResult.processed(index, qe.getMessage()));
+	    attached.add(qe);
+	}
+	if (attached.isEmpty())
+	    return results;
+
+	try {
+	    qoDAO.save(qo);
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+	paymentMethods.invalidateOrder(orderNumber);
+	for (final QazkomError qe : attached)
+	    try {
+		qeDAO.save(qe);
+	    } catch (final IllegalArgument e) {
+		// it should not happens
+		throw new EJBException(e.getMessage());
+	    }
+	logger.INFO.log("QazkomOrder '%1$s' got %2$d errors in batch", orderNumber, attached.size());
+
+	return results;
+    }
+
+    @EJB
+    private InvoiceHasPaidOutboxBean invoiceHasPaidOutbox;
 
     private Invoice _notifyExternalsAboutPaymentArrived(final Invoice invoice) {
 	if (invoice.isPaid()) {
@@ -734,19 +1323,19 @@ public class EpaymentFacadeBean implements EpaymentFacadeLocal, EpaymentFacadeRe
 	    ev.setExternalId(externalId);
 	    ev.setPayerName(payerName);
 
-	    invoiceHasPaidEventNotificatorClient.eventNotify(ev);
+	    // published once the transaction commits
+	    invoiceHasPaidOutbox.publish(ev);
 	}
 	return invoice;
     }
 
     @EJB
-    private BankDAORemote bankDAO;
+    private BankCacheBean bankCache;
 
     private Bank fetchBankWithCardMasked(final String cardMasked) {
 	try {
 	    final String bin = cardMasked.substring(0, 6);
-	    final Bank bank = bankDAO.getByBIN(bin);
-	    return bank;
+	    return bankCache.getByBIN(bin);
 	} catch (Exception e) {
 	    return null;
 	}
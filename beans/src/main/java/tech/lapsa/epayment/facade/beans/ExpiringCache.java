@@ -0,0 +1,195 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import tech.lapsa.java.commons.function.MyObjects;
+
+final class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // concurrent misses of a key share one load
+    private final SingleFlight<K, V> loads = new SingleFlight<>(0);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // the token of the load running for a key, dropped when the key is invalidated, guarded by entries
+    private final Map<K, Object> loading = new HashMap<>();
+
+    ExpiringCache(final int maxSize, final long ttlMillis, final long negativeTtlMillis) {
+	this(maxSize, ttlMillis, negativeTtlMillis, System::currentTimeMillis);
+    }
+
+    ExpiringCache(final int maxSize, final long ttlMillis, final long negativeTtlMillis, final LongSupplier clock) {
+	if (maxSize <= 0)
+	    throw new IllegalArgumentException("maxSize must be positive");
+	MyObjects.requireNonNull(clock, "clock");
+	this.maxSize = maxSize;
+	this.ttlMillis = ttlMillis;
+	this.negativeTtlMillis = negativeTtlMillis;
+	this.clock = clock;
+	this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true);
+    }
+
+    // a null value returned by the loader is cached as a negative entry, a value loaded while its key was
+    // invalidated is returned but not cached as it may predate the change, callers missing the same key while it is
+    // loaded wait for that load instead of running the loader again
+    V get(final K key, final Function<? super K, ? extends V> loader) {
+	MyObjects.requireNonNull(key, "key");
+	MyObjects.requireNonNull(loader, "loader");
+	final long now = clock.getAsLong();
+	synchronized (entries) {
+	    final Entry<V> e = entries.get(key);
+	    if (e != null) {
+		if (e.expires > now) {
+		    hits.incrementAndGet();
+		    return e.value;
+		}
+		entries.remove(key);
+	    }
+	}
+	misses.incrementAndGet();
+	return loads.execute(key, () -> load(key, loader));
+    }
+
+    V getIfPresent(final K key) {
+	MyObjects.requireNonNull(key, "key");
+	final long now = clock.getAsLong();
+	synchronized (entries) {
+	    final Entry<V> e = entries.get(key);
+	    if (e == null || e.expires <= now)
+		return null;
+	    return e.value;
+	}
+    }
+
+    void put(final K key, final V value) {
+	MyObjects.requireNonNull(key, "key");
+	final Entry<V> e = newEntry(value);
+	if (e == null)
+	    return;
+	synchronized (entries) {
+	    store(key, e);
+	}
+    }
+
+    void invalidate(final K key) {
+	MyObjects.requireNonNull(key, "key");
+	synchronized (entries) {
+	    entries.remove(key);
+	    loading.remove(key);
+	    loads.forget(key);
+	}
+    }
+
+    int invalidateIf(final BiPredicate<? super K, ? super V> predicate) {
+	MyObjects.requireNonNull(predicate, "predicate");
+	int removed = 0;
+	// the value of a running load is unknown yet, so every running load is treated as matching
+	synchronized (entries) {
+	    loading.clear();
+	    loads.forgetAll();
+	    final Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+	    while (it.hasNext()) {
+		final Map.Entry<K, Entry<V>> e = it.next();
+		if (predicate.test(e.getKey(), e.getValue().value)) {
+		    it.remove();
+		    removed++;
+		}
+	    }
+	}
+	return removed;
+    }
+
+    void invalidateAll() {
+	synchronized (entries) {
+	    entries.clear();
+	    loading.clear();
+	    loads.forgetAll();
+	}
+    }
+
+    int size() {
+	synchronized (entries) {
+	    return entries.size();
+	}
+    }
+
+    long getHits() {
+	return hits.get();
+    }
+
+    long getMisses() {
+	return misses.get();
+    }
+
+    private V load(final K key, final Function<? super K, ? extends V> loader) {
+	final Object token = new Object();
+	synchronized (entries) {
+	    loading.put(key, token);
+	}
+	final V value;
+	try {
+	    value = loader.apply(key);
+	} catch (final RuntimeException | Error e) {
+	    synchronized (entries) {
+		loading.remove(key, token);
+	    }
+	    throw e;
+	}
+	final Entry<V> e = newEntry(value);
+	synchronized (entries) {
+	    // a newer load started after an invalidation owns the key now
+	    if (loading.remove(key, token) && e != null)
+		store(key, e);
+	}
+	return value;
+    }
+
+    private Entry<V> newEntry(final V value) {
+	final long ttl = value == null ? negativeTtlMillis : ttlMillis;
+	if (ttl <= 0)
+	    return null;
+	return new Entry<>(value, clock.getAsLong() + ttl);
+    }
+
+    // caller holds the entries lock
+    private void store(final K key, final Entry<V> e) {
+	entries.put(key, e);
+	if (entries.size() > maxSize) {
+	    final Iterator<K> it = entries.keySet().iterator();
+	    it.next();
+	    it.remove();
+	}
+    }
+
+    private static final class Entry<V> {
+
+	private final V value;
+	private final long expires;
+
+	private Entry(final V value, final long expires) {
+	    this.value = value;
+	    this.expires = expires;
+	}
+    }
+
+    @Override
+    public String toString() {
+	return String.format("ExpiringCache[size=%1$d, hits=%2$d, misses=%3$d]", size(), getHits(), getMisses());
+    }
+}
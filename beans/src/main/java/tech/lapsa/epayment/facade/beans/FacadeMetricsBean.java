@@ -0,0 +1,203 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class FacadeMetricsBean {
+
+    static final String JMX_OBJECT_NAME = "tech.lapsa.epayment:type=FacadeMetrics";
+
+    public void recordLatency(final String name, final long nanos, final boolean failed)
+	    throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(name, "name");
+	latencies.computeIfAbsent(name, x -> new LatencyStats()).record(nanos, failed);
+    }
+
+    public void recordOutcome(final String name, final String outcome) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(name, "name");
+	MyStrings.requireNonEmpty(outcome, "outcome");
+	outcomes.computeIfAbsent(name, x -> new ConcurrentHashMap<>()) //
+		.computeIfAbsent(outcome, x -> new LongAdder()) //
+		.increment();
+    }
+
+    // every call through the returned instance is timed under name.method(parameter types)
+    public <T> T timed(final Class<T> type, final T target, final String name) throws IllegalArgumentException {
+	MyObjects.requireNonNull(type, "type");
+	MyObjects.requireNonNull(target, "target");
+	MyStrings.requireNonEmpty(name, "name");
+	final Map<Method, String> names = new HashMap<>();
+	for (final Method method : type.getMethods())
+	    names.put(method, metricsNameOf(name, method));
+	return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+		(proxy, method, args) -> {
+		    if (method.getDeclaringClass() == Object.class)
+			return method.invoke(target, args);
+		    final String metricsName = names.get(method);
+		    final long started = System.nanoTime();
+		    boolean failed = true;
+		    try {
+			final Object result = method.invoke(target, args);
+			failed = false;
+			return result;
+		    } catch (final InvocationTargetException e) {
+			throw e.getCause();
+		    } finally {
+			recordLatency(metricsName, System.nanoTime() - started, failed);
+		    }
+		}));
+    }
+
+    // overloads are told apart by their parameter types
+    static String metricsNameOf(final String prefix, final Method method) {
+	final StringBuilder sb = new StringBuilder(prefix).append('.').append(method.getName()).append('(');
+	final Class<?>[] types = method.getParameterTypes();
+	for (int i = 0; i < types.length; i++)
+	    sb.append(i == 0 ? "" : ",").append(types[i].getSimpleName());
+	return sb.append(')').toString();
+    }
+
+    public Map<String, String> getLatencies() {
+	final SortedMap<String, String> result = new TreeMap<>();
+	latencies.forEach((name, stats) -> result.put(name, stats.toString()));
+	return Collections.unmodifiableMap(result);
+    }
+
+    public Map<String, Long> getOutcomes() {
+	final SortedMap<String, Long> result = new TreeMap<>();
+	outcomes.forEach((name, counters) -> counters
+		.forEach((outcome, counter) -> result.put(name + "." + outcome, counter.sum())));
+	return Collections.unmodifiableMap(result);
+    }
+
+    // Prometheus text exposition format 0.0.4
+    public String toPrometheusText() {
+	final StringBuilder sb = new StringBuilder(4096);
+	sb.append("# HELP epayment_latency_seconds Latency of facade operations and remote calls\n");
+	sb.append("# TYPE epayment_latency_seconds histogram\n");
+	new TreeMap<>(latencies).forEach((name, stats) -> {
+	    final String label = "name=\"" + escape(name) + "\"";
+	    final long[] counts = stats.getBucketCounts();
+	    long cumulative = 0;
+	    for (int i = 0; i < counts.length; i++) {
+		cumulative += counts[i];
+		final String le = i < LatencyStats.BUCKET_BOUNDS_MILLIS.length
+			? seconds(TimeUnit.MILLISECONDS.toNanos(LatencyStats.BUCKET_BOUNDS_MILLIS[i]))
+			: "+Inf";
+		sb.append("epayment_latency_seconds_bucket{").append(label).append(",le=\"").append(le).append("\"} ")
+			.append(cumulative).append('\n');
+	    }
+	    sb.append("epayment_latency_seconds_sum{").append(label).append("} ")
+		    .append(seconds(stats.getTotalNanos())).append('\n');
+	    sb.append("epayment_latency_seconds_count{").append(label).append("} ").append(cumulative).append('\n');
+	});
+	sb.append("# HELP epayment_outcomes_total Outcomes of facade operations\n");
+	sb.append("# TYPE epayment_outcomes_total counter\n");
+	new TreeMap<>(outcomes).forEach((name, counters) -> new TreeMap<>(counters)
+		.forEach((outcome, counter) -> sb.append("epayment_outcomes_total{name=\"").append(escape(name))
+			.append("\",outcome=\"").append(escape(outcome)).append("\"} ").append(counter.sum())
+			.append('\n')));
+	return sb.toString();
+    }
+
+    public interface FacadeMetricsMXBean {
+
+	Map<String, String> getLatencies();
+
+	Map<String, Long> getOutcomes();
+
+	String getPrometheusText();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    private final ConcurrentMap<String, LatencyStats> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> outcomes = new ConcurrentHashMap<>();
+
+    private ObjectName objectName;
+
+    // a separate object, an interface on the bean class would replace its no-interface view
+    @PostConstruct
+    public void init() {
+	final FacadeMetricsMXBean mxBean = new FacadeMetricsMXBean() {
+
+	    @Override
+	    public Map<String, String> getLatencies() {
+		return FacadeMetricsBean.this.getLatencies();
+	    }
+
+	    @Override
+	    public Map<String, Long> getOutcomes() {
+		return FacadeMetricsBean.this.getOutcomes();
+	    }
+
+	    @Override
+	    public String getPrometheusText() {
+		return toPrometheusText();
+	    }
+	};
+	try {
+	    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	    final ObjectName name = new ObjectName(JMX_OBJECT_NAME);
+	    if (server.isRegistered(name))
+		server.unregisterMBean(name);
+	    server.registerMBean(mxBean, name);
+	    objectName = name;
+	} catch (final JMException e) {
+	    logger.WARNING.log("Facade metrics are not exported over JMX - %1$s", e.getMessage());
+	}
+    }
+
+    @PreDestroy
+    public void destroy() {
+	if (objectName == null)
+	    return;
+	try {
+	    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	} catch (final JMException e) {
+	    logger.FINE.log("Facade metrics MBean unregistration failed - %1$s", e.getMessage());
+	}
+    }
+
+    private static String seconds(final long nanos) {
+	return String.format(Locale.ROOT, "%.6f", (double) nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String escape(final String value) {
+	return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,51 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ejb.EJB;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+
+// times every business method of the facade and counts its outcomes by exception type, a method re-entered on the
+// same thread is counted as part of the outer call only, while the facade calling another of its methods through
+// its business object is timed on its own too
+public class FacadeMetricsInterceptor {
+
+    static final String OUTCOME_OK = "OK";
+
+    private static final ConcurrentMap<Method, String> NAMES = new ConcurrentHashMap<>();
+
+    // the methods with a call being measured on the thread
+    private static final ThreadLocal<Set<Method>> MEASURING = ThreadLocal.withInitial(HashSet::new);
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @AroundInvoke
+    public Object measure(final InvocationContext ctx) throws Exception {
+	final Method method = ctx.getMethod();
+	final Set<Method> measuring = MEASURING.get();
+	if (measuring.contains(method))
+	    return ctx.proceed();
+	final String name = NAMES.computeIfAbsent(method,
+		m -> FacadeMetricsBean.metricsNameOf(m.getDeclaringClass().getSimpleName(), m));
+	measuring.add(method);
+	final long started = System.nanoTime();
+	try {
+	    final Object result = ctx.proceed();
+	    metrics.recordLatency(name, System.nanoTime() - started, false);
+	    metrics.recordOutcome(name, OUTCOME_OK);
+	    return result;
+	} catch (final Exception | Error e) {
+	    metrics.recordLatency(name, System.nanoTime() - started, true);
+	    metrics.recordOutcome(name, e.getClass().getSimpleName());
+	    throw e;
+	} finally {
+	    measuring.remove(method);
+	}
+    }
+}
@@ -0,0 +1,95 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
+
+import tech.lapsa.epayment.dao.InvoiceDAO;
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyObjects;
+
+// saves accepted invoices for the facade, each chunk of a bulk accept in a transaction of its own, so the chunk
+// entry point is not part of the facade's business methods
+@Stateless
+@LocalBean
+@Interceptors(FacadeMetricsInterceptor.class)
+public class InvoiceAcceptBean {
+
+    // MODIFIERS
+
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public Invoice save(final Invoice temp) throws IllegalArgument {
+	try {
+	    return _save(temp);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<InvoiceAcceptResult> acceptChunk(final InvoiceAcceptChunk chunk) throws IllegalArgument {
+	try {
+	    return _acceptChunk(chunk);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // PRIVATE
+
+    @EJB
+    private TimedDAOsBean timedDAOs;
+
+    @EJB
+    private InvoiceCacheBean invoiceCache;
+
+    @EJB
+    private InvoiceExpirySweeperBean expirySweeper;
+
+    @EJB
+    private NotificationOutboxBean notifications;
+
+    private InvoiceDAO invoiceDAO;
+
+    @PostConstruct
+    public void init() {
+	invoiceDAO = timedDAOs.getInvoiceDAO();
+    }
+
+    private Invoice _save(final Invoice temp) throws IllegalArgumentException {
+	MyObjects.requireNonNull(temp, "temp");
+	final Invoice i;
+	try {
+	    i = invoiceDAO.save(temp);
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+	invoiceCache.invalidate(i.getNumber());
+	expirySweeper.enroll(i.getNumber());
+	return i;
+    }
+
+    private List<InvoiceAcceptResult> _acceptChunk(final InvoiceAcceptChunk chunk) throws IllegalArgumentException {
+	MyObjects.requireNonNull(chunk, "chunk");
+
+	final List<InvoiceAcceptResult> results = chunk.getFailures();
+	chunk.getInvoices().forEach((index, temp) -> {
+	    final Invoice i = _save(temp);
+	    // dispatched as one batch after the chunk commits
+	    chunk.paymentLinkOf(i).ifPresent(notifications::enqueue);
+	    results.add(InvoiceAcceptResult.accepted(index, i));
+	});
+	results.sort(Comparator.comparingInt(InvoiceAcceptResult::getIndex));
+	return results;
+    }
+}
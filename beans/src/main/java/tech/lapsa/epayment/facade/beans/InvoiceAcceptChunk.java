@@ -0,0 +1,49 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification;
+import tech.lapsa.java.commons.function.MyObjects;
+
+// one chunk of a bulk accept, built and number-checked before its transaction, package-private so the chunk
+// entry point of InvoiceAcceptBean can't be called from outside the bean package
+final class InvoiceAcceptChunk {
+
+    private final Function<Invoice, Optional<Notification>> paymentLinkOf;
+    private final SortedMap<Integer, Invoice> invoices = new TreeMap<>();
+    private final SortedMap<Integer, String> failures = new TreeMap<>();
+
+    InvoiceAcceptChunk(final Function<Invoice, Optional<Notification>> paymentLinkOf) {
+	this.paymentLinkOf = MyObjects.requireNonNull(paymentLinkOf, "paymentLinkOf");
+    }
+
+    void add(final int index, final Invoice invoice) throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoice, "invoice");
+	invoices.put(index, invoice);
+    }
+
+    void fail(final int index, final String failureMessage) {
+	failures.put(index, failureMessage);
+    }
+
+    // the payment link notification of a saved invoice, if its consumer has an email
+    Optional<Notification> paymentLinkOf(final Invoice invoice) {
+	return paymentLinkOf.apply(invoice);
+    }
+
+    SortedMap<Integer, Invoice> getInvoices() {
+	return invoices;
+    }
+
+    List<InvoiceAcceptResult> getFailures() {
+	final List<InvoiceAcceptResult> results = new ArrayList<>(failures.size());
+	failures.forEach((index, message) -> results.add(InvoiceAcceptResult.failed(index, message)));
+	return results;
+    }
+}
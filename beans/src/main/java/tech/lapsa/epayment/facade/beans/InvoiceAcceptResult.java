@@ -0,0 +1,51 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.Serializable;
+
+import tech.lapsa.epayment.domain.Invoice;
+
+public final class InvoiceAcceptResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static InvoiceAcceptResult accepted(final int index, final Invoice invoice) {
+	return new InvoiceAcceptResult(index, invoice, null);
+    }
+
+    static InvoiceAcceptResult failed(final int index, final String failureMessage) {
+	return new InvoiceAcceptResult(index, null, failureMessage);
+    }
+
+    private final int index;
+    private final Invoice invoice;
+    private final String failureMessage;
+
+    private InvoiceAcceptResult(final int index, final Invoice invoice, final String failureMessage) {
+	this.index = index;
+	this.invoice = invoice;
+	this.failureMessage = failureMessage;
+    }
+
+    public int getIndex() {
+	return index;
+    }
+
+    public boolean isAccepted() {
+	return invoice != null;
+    }
+
+    public Invoice getInvoice() {
+	return invoice;
+    }
+
+    public String getFailureMessage() {
+	return failureMessage;
+    }
+
+    @Override
+    public String toString() {
+	return isAccepted() //
+		? String.format("InvoiceAcceptResult[%1$d ACCEPTED %2$s]", index, invoice.getNumber())
+		: String.format("InvoiceAcceptResult[%1$d FAILED %2$s]", index, failureMessage);
+    }
+}
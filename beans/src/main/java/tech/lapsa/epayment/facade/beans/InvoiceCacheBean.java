@@ -0,0 +1,225 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.jms.Topic;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.epayment.dao.InvoiceDAO;
+import tech.lapsa.epayment.dao.QazkomOrderDAO;
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+import tech.lapsa.patterns.dao.NotFound;
+
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InvoiceCacheBean {
+
+    static final String JNDI_INVALIDATION_TOPIC = "java:app/epayment/jms/InvoiceCacheInvalidation";
+
+    // the name invalidations of this cache carry on the topic
+    static final String CACHE_NAME = "invoice";
+
+    static final String PROPERTY_INVOICE_CACHE_ENABLED = "invoice-cache.enabled";
+    static final String PROPERTY_INVOICE_CACHE_SIZE = "invoice-cache.size";
+    static final String PROPERTY_INVOICE_CACHE_TTL_SECONDS = "invoice-cache.ttl-seconds";
+    static final String PROPERTY_INVOICE_CACHE_NEGATIVE_TTL_SECONDS = "invoice-cache.negative-ttl-seconds";
+    static final String PROPERTY_INVOICE_CACHE_KNOWN_TTL_SECONDS = "invoice-cache.known-ttl-seconds";
+
+    static final boolean DEFAULT_INVOICE_CACHE_ENABLED = false;
+    static final int DEFAULT_INVOICE_CACHE_SIZE = 10_000;
+    static final long DEFAULT_INVOICE_CACHE_TTL_SECONDS = 30;
+    static final long DEFAULT_INVOICE_CACHE_NEGATIVE_TTL_SECONDS = 5;
+    static final long DEFAULT_INVOICE_CACHE_KNOWN_TTL_SECONDS = 3_600;
+
+    // READERS
+
+    // returns null for unknown invoice number, every call gets its own copy of the cached snapshot
+    public Invoice getByNumber(final String invoiceNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	if (cache == null)
+	    return load(invoiceNumber);
+	final byte[] snapshot = cache.get(invoiceNumber, this::loadSnapshot);
+	return snapshot == null ? null : copyOf(snapshot);
+    }
+
+    // answers from the cache when possible, unknown numbers are remembered for the negative TTL, with the cache
+    // disabled the numbers found are remembered without their invoices for the known TTL, either way a number not
+    // in the cache is first checked with the unique number finder and the invoice is loaded only when it's taken
+    public boolean exists(final String invoiceNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	if (cache == null)
+	    return known.get(invoiceNumber, this::loadExistence) != null;
+	return cache.get(invoiceNumber, this::loadSnapshotIfTaken) != null;
+    }
+
+    public boolean isEnabled() {
+	return cache != null;
+    }
+
+    public long getHitCount() {
+	return cache == null ? 0 : cache.getHits();
+    }
+
+    public long getMissCount() {
+	return cache == null ? 0 : cache.getMisses();
+    }
+
+    public int getSize() {
+	return cache == null ? 0 : cache.size();
+    }
+
+    // MODIFIERS
+
+    // evicts the entry on this node right away and once more after the current transaction completes, other nodes
+    // are notified over the invalidation topic when the transaction commits
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void invalidate(final String invoiceNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	if (cache != null)
+	    invalidations.invalidate(invoiceNumber);
+    }
+
+    // called for the invalidation messages received from the topic, including the ones sent by this node
+    public void evict(final String[] invoiceNumbers) {
+	if (cache == null)
+	    return;
+	for (final String invoiceNumber : invoiceNumbers)
+	    cache.invalidate(invoiceNumber);
+	logger.FINE.log("Invoice cache invalidated with %1$d numbers", invoiceNumbers.length);
+    }
+
+    public void invalidateAll() {
+	if (cache != null)
+	    cache.invalidateAll();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private TimedDAOsBean timedDAOs;
+
+    private InvoiceDAO invoiceDAO;
+    private QazkomOrderDAO qoDAO;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Inject
+    private JmsClientFactory jmsFactory;
+
+    @Resource(lookup = JNDI_INVALIDATION_TOPIC)
+    private Topic invalidationTopic;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private CacheInvalidations invalidations;
+
+    // serialized snapshots, so a caller modifying its invoice can't change what the others read
+    private ExpiringCache<String, byte[]> cache;
+
+    // the numbers found while the cache is disabled, an invoice is never deleted so they need no invalidation,
+    // misses are not kept
+    private ExpiringCache<String, Boolean> known;
+
+    @PostConstruct
+    public void init() {
+	invoiceDAO = timedDAOs.getInvoiceDAO();
+	qoDAO = timedDAOs.getQazkomOrderDAO();
+	final int size = ConfigProperties.intOf(epaymentConfig, PROPERTY_INVOICE_CACHE_SIZE,
+		DEFAULT_INVOICE_CACHE_SIZE);
+	if (!ConfigProperties.booleanOf(epaymentConfig, PROPERTY_INVOICE_CACHE_ENABLED,
+		DEFAULT_INVOICE_CACHE_ENABLED)) {
+	    final long knownTtl = ConfigProperties.longOf(epaymentConfig, PROPERTY_INVOICE_CACHE_KNOWN_TTL_SECONDS,
+		    DEFAULT_INVOICE_CACHE_KNOWN_TTL_SECONDS);
+	    known = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(knownTtl), 0);
+	    return;
+	}
+	final long ttl = ConfigProperties.longOf(epaymentConfig, PROPERTY_INVOICE_CACHE_TTL_SECONDS,
+		DEFAULT_INVOICE_CACHE_TTL_SECONDS);
+	// accepting an invoice invalidates its number, so a cached miss lasts until the accept commits at most
+	final long negativeTtl = ConfigProperties.longOf(epaymentConfig, PROPERTY_INVOICE_CACHE_NEGATIVE_TTL_SECONDS,
+		DEFAULT_INVOICE_CACHE_NEGATIVE_TTL_SECONDS);
+	cache = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(ttl), TimeUnit.SECONDS.toMillis(negativeTtl));
+	final JmsEventNotificatorClient<String[]> notificator = jmsFactory.createEventNotificator(invalidationTopic);
+	invalidations = new CacheInvalidations(CACHE_NAME, registry, notificator, cache::invalidate, logger);
+	logger.INFO.log("Invoice cache enabled with size %1$d, TTL %2$d s and negative TTL %3$d s", size, ttl,
+		negativeTtl);
+    }
+
+    private Invoice load(final String invoiceNumber) throws EJBException {
+	try {
+	    return invoiceDAO.getByNumber(invoiceNumber);
+	} catch (final NotFound e) {
+	    return null;
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+    }
+
+    // a number the facade would accept for a new invoice is not taken by any, so most misses cost the finder call
+    // only, a taken number is still confirmed by loading its invoice
+    private boolean taken(final String invoiceNumber) {
+	return !qoDAO.isValidUniqueNumber(invoiceNumber);
+    }
+
+    private Boolean loadExistence(final String invoiceNumber) throws EJBException {
+	return taken(invoiceNumber) && load(invoiceNumber) != null ? Boolean.TRUE : null;
+    }
+
+    private byte[] loadSnapshotIfTaken(final String invoiceNumber) throws EJBException {
+	return taken(invoiceNumber) ? loadSnapshot(invoiceNumber) : null;
+    }
+
+    private byte[] loadSnapshot(final String invoiceNumber) throws EJBException {
+	final Invoice invoice = load(invoiceNumber);
+	return invoice == null ? null : snapshotOf(invoice);
+    }
+
+    private static byte[] snapshotOf(final Invoice invoice) throws EJBException {
+	final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+	    out.writeObject(invoice);
+	} catch (final IOException e) {
+	    // it should not happens
+	    throw new EJBException(e);
+	}
+	return bytes.toByteArray();
+    }
+
+    private static Invoice copyOf(final byte[] snapshot) throws EJBException {
+	try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(snapshot))) {
+	    return (Invoice) in.readObject();
+	} catch (final IOException | ClassNotFoundException e) {
+	    // it should not happens
+	    throw new EJBException(e);
+	}
+    }
+}
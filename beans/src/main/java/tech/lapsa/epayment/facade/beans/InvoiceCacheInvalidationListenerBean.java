@@ -0,0 +1,53 @@
+package tech.lapsa.epayment.facade.beans;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSDestinationDefinition;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+@JMSDestinationDefinition(name = InvoiceCacheBean.JNDI_INVALIDATION_TOPIC, //
+	interfaceName = "javax.jms.Topic", //
+	destinationName = "EpaymentInvoiceCacheInvalidation")
+@MessageDriven(activationConfig = {
+	@ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+	@ActivationConfigProperty(propertyName = "destinationLookup", //
+		propertyValue = InvoiceCacheBean.JNDI_INVALIDATION_TOPIC),
+	@ActivationConfigProperty(propertyName = "subscriptionDurability", propertyValue = "NonDurable")
+})
+public class InvoiceCacheInvalidationListenerBean implements MessageListener {
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private InvoiceCacheBean invoiceCache;
+
+    @EJB
+    private PaymentMethodCacheBean paymentMethods;
+
+    @Override
+    public void onMessage(final Message message) {
+	final String cacheName;
+	final String[] keys;
+	try {
+	    cacheName = message.getStringProperty(CacheInvalidations.MESSAGE_PROPERTY_CACHE);
+	    keys = message.getBody(String[].class);
+	} catch (final JMSException e) {
+	    logger.WARNING.log("Cache invalidation message is malformed - %1$s", e.getMessage());
+	    return;
+	}
+	if (keys == null)
+	    return;
+	if (PaymentMethodCacheBean.CACHE_NAME.equals(cacheName))
+	    paymentMethods.evict(keys);
+	else
+	    invoiceCache.evict(keys);
+    }
+}
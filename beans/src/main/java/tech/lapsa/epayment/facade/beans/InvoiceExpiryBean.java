@@ -0,0 +1,100 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import tech.lapsa.epayment.dao.InvoiceDAO;
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.exceptions.IllegalState;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.patterns.dao.NotFound;
+
+// expires invoices for the facade and the expiry sweeper, so neither of them has to call the other back
+@Stateless
+@LocalBean
+public class InvoiceExpiryBean {
+
+    // MODIFIERS
+
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public void expire(final Invoice invoice) throws IllegalArgument, IllegalState {
+	try {
+	    _expire(invoice);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // unknown and no longer pending invoices are skipped, returns the number of invoices expired
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int expireChunk(final List<String> invoiceNumbers) throws IllegalArgument {
+	try {
+	    return _expireChunk(invoiceNumbers);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
+    // PRIVATE
+
+    @EJB
+    private TimedDAOsBean timedDAOs;
+
+    @EJB
+    private InvoiceCacheBean invoiceCache;
+
+    private InvoiceDAO invoiceDAO;
+
+    @PostConstruct
+    public void init() {
+	invoiceDAO = timedDAOs.getInvoiceDAO();
+    }
+
+    private void _expire(final Invoice invoice) throws IllegalArgumentException, IllegalState {
+	MyObjects.requireNonNull(invoice, "invoice");
+	invoice.expire();
+	try {
+	    invoiceDAO.save(invoice);
+	} catch (final IllegalArgument e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+	invoiceCache.invalidate(invoice.getNumber());
+    }
+
+    private int _expireChunk(final List<String> invoiceNumbers) throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoiceNumbers, "invoiceNumbers");
+	int expired = 0;
+	for (final String invoiceNumber : invoiceNumbers) {
+	    MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	    final Invoice i;
+	    try {
+		i = invoiceDAO.getByNumber(invoiceNumber);
+	    } catch (final NotFound e) {
+		continue;
+	    } catch (final IllegalArgument e) {
+		// it should not happens
+		throw new EJBException(e.getMessage());
+	    }
+	    if (!i.isPending())
+		continue;
+	    try {
+		_expire(i);
+	    } catch (final IllegalState e) {
+		// payment is inconsistent
+		throw new EJBException(e.getMessage());
+	    }
+	    expired++;
+	}
+	return expired;
+    }
+}
@@ -0,0 +1,333 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class InvoiceExpirySweeperBean {
+
+    static final String PROPERTY_EXPIRY_SWEEP_INTERVAL_SECONDS = "invoice-expiry.sweep-interval-seconds";
+    static final String PROPERTY_EXPIRY_CHUNK_SIZE = "invoice-expiry.chunk-size";
+    static final String PROPERTY_EXPIRY_PARALLELISM = "invoice-expiry.parallelism";
+    static final String PROPERTY_EXPIRY_MAX_ATTEMPTS = "invoice-expiry.max-attempts";
+    static final String PROPERTY_EXPIRY_MAX_PENDING = "invoice-expiry.max-pending";
+    static final String PROPERTY_EXPIRY_EXPIRE_AFTER_SECONDS = "invoice-expiry.expire-after-seconds";
+
+    static final long DEFAULT_EXPIRY_SWEEP_INTERVAL_SECONDS = 60;
+    static final int DEFAULT_EXPIRY_CHUNK_SIZE = 100;
+    static final int DEFAULT_EXPIRY_PARALLELISM = 4;
+    static final int DEFAULT_EXPIRY_MAX_ATTEMPTS = 3;
+    static final int DEFAULT_EXPIRY_MAX_PENDING = 1_000_000;
+    static final long DEFAULT_EXPIRY_EXPIRE_AFTER_SECONDS = 0;
+
+    // MODIFIERS
+
+    // the invoices are expired by the next sweep, the ones already paid or expired meanwhile are skipped
+    public int submit(final Collection<String> invoiceNumbers) throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoiceNumbers, "invoiceNumbers");
+	final long now = System.currentTimeMillis();
+	int accepted = 0;
+	for (final String invoiceNumber : invoiceNumbers)
+	    if (schedule(MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber"), now))
+		accepted++;
+	return accepted;
+    }
+
+    public boolean schedule(final String invoiceNumber, final Instant dueAt) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	MyObjects.requireNonNull(dueAt, "dueAt");
+	return schedule(invoiceNumber, dueAt.toEpochMilli());
+    }
+
+    // schedules a newly accepted invoice when invoice-expiry.expire-after-seconds is set
+    public void enroll(final String invoiceNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	if (expireAfterMillis > 0)
+	    schedule(invoiceNumber, System.currentTimeMillis() + expireAfterMillis);
+    }
+
+    // expires everything due in chunks, returns the number of expired invoices
+    public int sweep() {
+	if (!running.compareAndSet(false, true))
+	    return 0;
+	try {
+	    final long started = System.nanoTime();
+	    int swept = 0;
+	    List<List<Entry>> chunks;
+	    while (!(chunks = takeDue()).isEmpty()) {
+		final List<Future<Integer>> results = new ArrayList<>(chunks.size());
+		for (final List<Entry> chunk : chunks)
+		    results.add(executor.submit(() -> expire(chunk)));
+		for (final Future<Integer> result : results)
+		    swept += await(result);
+	    }
+	    final long elapsed = System.nanoTime() - started;
+	    lastSweepExpired = swept;
+	    lastSweepMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+	    lastSweepInstant = Instant.now();
+	    if (swept > 0)
+		logger.INFO.log("Invoice expiry sweep expired %1$d invoices in %2$d ms, %3$d pending", swept,
+			lastSweepMillis, getPendingCount());
+	    return swept;
+	} finally {
+	    running.set(false);
+	}
+    }
+
+    // READERS
+
+    public int getPendingCount() {
+	synchronized (queue) {
+	    return queue.size();
+	}
+    }
+
+    // how long the most overdue pending invoice has been waiting
+    public long getLagMillis() {
+	final long now = System.currentTimeMillis();
+	synchronized (queue) {
+	    final Entry head = queue.peek();
+	    return head == null || head.dueAt > now ? 0 : now - head.dueAt;
+	}
+    }
+
+    public long getExpiredCount() {
+	return expired.get();
+    }
+
+    public long getSkippedCount() {
+	return skipped.get();
+    }
+
+    public long getFailedCount() {
+	return failed.get();
+    }
+
+    public double getLastSweepThroughput() {
+	final long millis = lastSweepMillis;
+	return millis == 0 ? 0 : lastSweepExpired * 1000d / millis;
+    }
+
+    public Instant getLastSweepInstant() {
+	return lastSweepInstant;
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private InvoiceExpiryBean expiry;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Resource
+    private TimerService timerService;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    // pending invoices ordered by due time, an entry leaves the queue only when its chunk is committed or given up
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+	    (a, b) -> Long.compare(a.dueAt, b.dueAt));
+    private final Map<String, Entry> queued = new HashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile int lastSweepExpired;
+    private volatile long lastSweepMillis;
+    private volatile Instant lastSweepInstant;
+
+    private long sweepIntervalMillis;
+    private int chunkSize;
+    private int parallelism;
+    private int maxAttempts;
+    private int maxPending;
+    private long expireAfterMillis;
+
+    @PostConstruct
+    public void init() {
+	sweepIntervalMillis = TimeUnit.SECONDS.toMillis(ConfigProperties.longOf(epaymentConfig,
+		PROPERTY_EXPIRY_SWEEP_INTERVAL_SECONDS, DEFAULT_EXPIRY_SWEEP_INTERVAL_SECONDS));
+	chunkSize = ConfigProperties.intOf(epaymentConfig, PROPERTY_EXPIRY_CHUNK_SIZE, DEFAULT_EXPIRY_CHUNK_SIZE);
+	parallelism = ConfigProperties.intOf(epaymentConfig, PROPERTY_EXPIRY_PARALLELISM,
+		DEFAULT_EXPIRY_PARALLELISM);
+	maxAttempts = ConfigProperties.intOf(epaymentConfig, PROPERTY_EXPIRY_MAX_ATTEMPTS,
+		DEFAULT_EXPIRY_MAX_ATTEMPTS);
+	maxPending = ConfigProperties.intOf(epaymentConfig, PROPERTY_EXPIRY_MAX_PENDING,
+		DEFAULT_EXPIRY_MAX_PENDING);
+	expireAfterMillis = TimeUnit.SECONDS.toMillis(ConfigProperties.longOf(epaymentConfig,
+		PROPERTY_EXPIRY_EXPIRE_AFTER_SECONDS, DEFAULT_EXPIRY_EXPIRE_AFTER_SECONDS));
+	if (chunkSize <= 0 || parallelism <= 0)
+	    throw new EJBException("Invoice expiry chunk size and parallelism must be positive");
+
+	if (sweepIntervalMillis > 0)
+	    timerService.createIntervalTimer(sweepIntervalMillis, sweepIntervalMillis, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    public void onTimeout() {
+	sweep();
+    }
+
+    private boolean schedule(final String invoiceNumber, final long dueAt) {
+	synchronized (queue) {
+	    final Entry existing = queued.get(invoiceNumber);
+	    if (existing != null) {
+		if (existing.dueAt <= dueAt)
+		    return true;
+		queue.remove(existing);
+	    } else if (queue.size() >= maxPending) {
+		logger.WARNING.log("Invoice expiry queue is full, '%1$s' not scheduled", invoiceNumber);
+		return false;
+	    }
+	    final Entry entry = new Entry(invoiceNumber, dueAt,
+		    existing == null ? 0 : existing.attempts);
+	    queued.put(invoiceNumber, entry);
+	    queue.add(entry);
+	    return true;
+	}
+    }
+
+    // up to parallelism chunks of due entries, the entries stay queued as the checkpoint until processed
+    private List<List<Entry>> takeDue() {
+	final long now = System.currentTimeMillis();
+	final List<List<Entry>> chunks = new ArrayList<>(parallelism);
+	synchronized (queue) {
+	    while (chunks.size() < parallelism) {
+		final List<Entry> chunk = new ArrayList<>(chunkSize);
+		while (chunk.size() < chunkSize && !queue.isEmpty() && queue.peek().dueAt <= now)
+		    chunk.add(queue.poll());
+		if (chunk.isEmpty())
+		    break;
+		chunks.add(chunk);
+	    }
+	}
+	return chunks;
+    }
+
+    private int expire(final List<Entry> chunk) {
+	final List<String> invoiceNumbers = new ArrayList<>(chunk.size());
+	chunk.forEach(entry -> invoiceNumbers.add(entry.invoiceNumber));
+
+	final long started = System.nanoTime();
+	final int count;
+	try {
+	    count = expiry.expireChunk(invoiceNumbers);
+	} catch (final IllegalArgument | RuntimeException e) {
+	    metrics.recordLatency("invoice-expiry.chunk", System.nanoTime() - started, true);
+	    logger.WARNING.log("Invoice expiry chunk of %1$d failed - %2$s", chunk.size(), e.getMessage());
+	    if (chunk.size() == 1) {
+		retry(chunk);
+		return 0;
+	    }
+	    // one bad invoice rolls the whole chunk back, so each one is tried on its own to retry the failed only
+	    int alone = 0;
+	    for (final Entry entry : chunk)
+		alone += expire(Collections.singletonList(entry));
+	    return alone;
+	}
+	metrics.recordLatency("invoice-expiry.chunk", System.nanoTime() - started, false);
+	expired.addAndGet(count);
+	skipped.addAndGet(chunk.size() - count);
+	release(chunk);
+	return count;
+    }
+
+    private void release(final List<Entry> chunk) {
+	synchronized (queue) {
+	    chunk.forEach(entry -> queued.remove(entry.invoiceNumber, entry));
+	}
+    }
+
+    // the entries were rolled back, they wait for the next sweep
+    private void retry(final List<Entry> chunk) {
+	final long dueAt = System.currentTimeMillis() + Math.max(sweepIntervalMillis, 1_000);
+	synchronized (queue) {
+	    for (final Entry entry : chunk) {
+		if (queued.get(entry.invoiceNumber) != entry)
+		    continue;
+		if (++entry.attempts >= maxAttempts) {
+		    queued.remove(entry.invoiceNumber);
+		    failed.incrementAndGet();
+		    logger.WARNING.log("Invoice '%1$s' expiry given up after %2$d attempts", entry.invoiceNumber,
+			    entry.attempts);
+		    continue;
+		}
+		final Entry next = new Entry(entry.invoiceNumber, dueAt, entry.attempts);
+		queued.put(entry.invoiceNumber, next);
+		queue.add(next);
+	    }
+	}
+    }
+
+    private static int await(final Future<Integer> result) {
+	try {
+	    return result.get();
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new EJBException(e);
+	} catch (final ExecutionException e) {
+	    // it should not happens
+	    throw new EJBException(e.getCause().getMessage());
+	}
+    }
+
+    private static final class Entry {
+
+	private final String invoiceNumber;
+	private final long dueAt;
+	private int attempts;
+
+	private Entry(final String invoiceNumber, final long dueAt, final int attempts) {
+	    this.invoiceNumber = invoiceNumber;
+	    this.dueAt = dueAt;
+	    this.attempts = attempts;
+	}
+    }
+}
@@ -0,0 +1,135 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.epayment.shared.entity.InvoiceHasPaidJmsEvent;
+import tech.lapsa.epayment.shared.jms.EpaymentDestinations;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsDestination;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+
+// InvoiceHasPaid events are taken over when the transaction commits and published in batches, the events of one
+// invoice are published in the order they were committed
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InvoiceHasPaidOutboxBean {
+
+    static final String PROPERTY_HAS_PAID_BATCH_SIZE = "invoice-has-paid-outbox.batch-size";
+    static final String PROPERTY_HAS_PAID_LINGER_MILLIS = "invoice-has-paid-outbox.linger-millis";
+    static final String PROPERTY_HAS_PAID_MAX_PENDING = "invoice-has-paid-outbox.max-pending";
+    static final String PROPERTY_HAS_PAID_MAX_WAIT_MILLIS = "invoice-has-paid-outbox.max-wait-millis";
+    static final String PROPERTY_HAS_PAID_MAX_ATTEMPTS = "invoice-has-paid-outbox.max-attempts";
+    static final String PROPERTY_HAS_PAID_INITIAL_BACKOFF_MILLIS = "invoice-has-paid-outbox.initial-backoff-millis";
+    static final String PROPERTY_HAS_PAID_MAX_BACKOFF_MILLIS = "invoice-has-paid-outbox.max-backoff-millis";
+
+    static final int DEFAULT_HAS_PAID_BATCH_SIZE = 100;
+    static final long DEFAULT_HAS_PAID_LINGER_MILLIS = 50;
+    static final int DEFAULT_HAS_PAID_MAX_PENDING = 10_000;
+    static final long DEFAULT_HAS_PAID_MAX_WAIT_MILLIS = 5_000;
+    static final int DEFAULT_HAS_PAID_MAX_ATTEMPTS = 10;
+    static final long DEFAULT_HAS_PAID_INITIAL_BACKOFF_MILLIS = 1_000;
+    static final long DEFAULT_HAS_PAID_MAX_BACKOFF_MILLIS = 60_000;
+
+    // MODIFIERS
+
+    // the event is published only after the current transaction commits, a full outbox makes the caller wait and
+    // fails it when there is still no room after the max wait, so the payment is rolled back and the bank retries
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void publish(final InvoiceHasPaidJmsEvent event) throws IllegalArgumentException, IllegalStateException {
+	MyObjects.requireNonNull(event, "event");
+	MyStrings.requireNonEmpty(event.getInvoiceNumber(), "event.invoiceNumber");
+	outbox.add(event);
+    }
+
+    // READERS
+
+    public int getPendingCount() {
+	return outbox.getPendingCount();
+    }
+
+    // age of the oldest event not yet published
+    public long getLagMillis() {
+	return outbox.getLagMillis();
+    }
+
+    public long getPublishedCount() {
+	return outbox.getPublishedCount();
+    }
+
+    public long getBatchCount() {
+	return outbox.getBatchCount();
+    }
+
+    public long getRetriedCount() {
+	return outbox.getRetriedCount();
+    }
+
+    public long getDroppedCount() {
+	return outbox.getDroppedCount();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Inject
+    @JmsDestination(EpaymentDestinations.INVOICE_HAS_PAID)
+    private JmsEventNotificatorClient<InvoiceHasPaidJmsEvent> invoiceHasPaidEventNotificatorClient;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private Outbox<InvoiceHasPaidJmsEvent> outbox;
+
+    @PostConstruct
+    public void init() {
+	final Outbox.Limits limits = new Outbox.Limits(
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_HAS_PAID_BATCH_SIZE, DEFAULT_HAS_PAID_BATCH_SIZE),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_HAS_PAID_LINGER_MILLIS,
+			DEFAULT_HAS_PAID_LINGER_MILLIS),
+		false,
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_HAS_PAID_MAX_PENDING, DEFAULT_HAS_PAID_MAX_PENDING),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_HAS_PAID_MAX_WAIT_MILLIS,
+			DEFAULT_HAS_PAID_MAX_WAIT_MILLIS),
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_HAS_PAID_MAX_ATTEMPTS, DEFAULT_HAS_PAID_MAX_ATTEMPTS),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_HAS_PAID_INITIAL_BACKOFF_MILLIS,
+			DEFAULT_HAS_PAID_INITIAL_BACKOFF_MILLIS),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_HAS_PAID_MAX_BACKOFF_MILLIS,
+			DEFAULT_HAS_PAID_MAX_BACKOFF_MILLIS));
+	outbox = new Outbox<>("invoice-has-paid", registry, executor, InvoiceHasPaidJmsEvent::getInvoiceNumber,
+		Outbox.Sender.eachOf(invoiceHasPaidEventNotificatorClient::eventNotify), limits, metrics, logger);
+	outbox.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+	outbox.stop();
+    }
+}
@@ -0,0 +1,69 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.Serializable;
+
+import tech.lapsa.epayment.domain.Invoice;
+
+public final class InvoiceLookupResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+	FOUND,
+	NOT_FOUND,
+	// the number is empty or malformed
+	INVALID;
+    }
+
+    static InvoiceLookupResult found(final String number, final Invoice invoice) {
+	return new InvoiceLookupResult(number, Status.FOUND, invoice, null);
+    }
+
+    static InvoiceLookupResult notFound(final String number) {
+	return new InvoiceLookupResult(number, Status.NOT_FOUND, null, null);
+    }
+
+    static InvoiceLookupResult invalid(final String number, final String failureMessage) {
+	return new InvoiceLookupResult(number, Status.INVALID, null, failureMessage);
+    }
+
+    private final String number;
+    private final Status status;
+    private final Invoice invoice;
+    private final String failureMessage;
+
+    private InvoiceLookupResult(final String number, final Status status, final Invoice invoice,
+	    final String failureMessage) {
+	this.number = number;
+	this.status = status;
+	this.invoice = invoice;
+	this.failureMessage = failureMessage;
+    }
+
+    public String getNumber() {
+	return number;
+    }
+
+    public Status getStatus() {
+	return status;
+    }
+
+    public boolean isFound() {
+	return status == Status.FOUND;
+    }
+
+    public Invoice getInvoice() {
+	return invoice;
+    }
+
+    public String getFailureMessage() {
+	return failureMessage;
+    }
+
+    @Override
+    public String toString() {
+	return failureMessage == null //
+		? String.format("InvoiceLookupResult[%1$s %2$s]", number, status)
+		: String.format("InvoiceLookupResult[%1$s %2$s %3$s]", number, status, failureMessage);
+    }
+}
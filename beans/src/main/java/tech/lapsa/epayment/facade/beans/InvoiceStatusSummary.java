@@ -0,0 +1,80 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Currency;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.InvoiceStatus;
+import tech.lapsa.epayment.domain.Payment;
+
+public final class InvoiceStatusSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static InvoiceStatusSummary of(final Invoice invoice) {
+	final Payment<?> payment = invoice.isPaid() ? invoice.getPayment() : null;
+	return new InvoiceStatusSummary(invoice.getNumber(), //
+		true, //
+		invoice.getStatus(), //
+		payment == null ? null : payment.getCreated(), //
+		invoice.getAmount(), //
+		invoice.getCurrency());
+    }
+
+    static InvoiceStatusSummary notFound(final String number) {
+	return new InvoiceStatusSummary(number, false, null, null, null, null);
+    }
+
+    private final String number;
+    private final boolean found;
+    private final InvoiceStatus status;
+    private final Instant paidInstant;
+    private final Double amount;
+    private final Currency currency;
+
+    private InvoiceStatusSummary(final String number,
+	    final boolean found,
+	    final InvoiceStatus status,
+	    final Instant paidInstant,
+	    final Double amount,
+	    final Currency currency) {
+	this.number = number;
+	this.found = found;
+	this.status = status;
+	this.paidInstant = paidInstant;
+	this.amount = amount;
+	this.currency = currency;
+    }
+
+    public String getNumber() {
+	return number;
+    }
+
+    public boolean isFound() {
+	return found;
+    }
+
+    public InvoiceStatus getStatus() {
+	return status;
+    }
+
+    public Instant getPaidInstant() {
+	return paidInstant;
+    }
+
+    public Double getAmount() {
+	return amount;
+    }
+
+    public Currency getCurrency() {
+	return currency;
+    }
+
+    @Override
+    public String toString() {
+	return found //
+		? String.format("InvoiceStatusSummary[%1$s %2$s]", number, status)
+		: String.format("InvoiceStatusSummary[%1$s NOT FOUND]", number);
+    }
+}
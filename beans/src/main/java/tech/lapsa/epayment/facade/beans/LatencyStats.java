@@ -0,0 +1,83 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LatencyStats {
+
+    // upper bounds of the histogram buckets, the last bucket is unbounded
+    static final long[] BUCKET_BOUNDS_MILLIS = { 1, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000 };
+
+    private static final long[] BUCKET_BOUNDS_NANOS = Arrays.stream(BUCKET_BOUNDS_MILLIS) //
+	    .map(TimeUnit.MILLISECONDS::toNanos) //
+	    .toArray();
+
+    private final LongAdder[] buckets = newBuckets();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(final long nanos, final boolean failed) {
+	count.increment();
+	if (failed)
+	    failures.increment();
+	totalNanos.add(nanos);
+	buckets[bucketOf(nanos)].increment();
+	long max;
+	while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos))
+	    ;
+    }
+
+    long getCount() {
+	return count.sum();
+    }
+
+    long getFailures() {
+	return failures.sum();
+    }
+
+    long getTotalNanos() {
+	return totalNanos.sum();
+    }
+
+    long getMaxNanos() {
+	return maxNanos.get();
+    }
+
+    // counts per bucket, not cumulative, the extra last one is for the values above the largest bound
+    long[] getBucketCounts() {
+	final long[] counts = new long[buckets.length];
+	for (int i = 0; i < buckets.length; i++)
+	    counts[i] = buckets[i].sum();
+	return counts;
+    }
+
+    double getMeanMillis() {
+	final long c = getCount();
+	return c == 0 ? 0d : (double) getTotalNanos() / c / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // a value on a bound stays in its bucket, as the le label of a Prometheus histogram says
+    private static int bucketOf(final long nanos) {
+	for (int i = 0; i < BUCKET_BOUNDS_NANOS.length; i++)
+	    if (nanos <= BUCKET_BOUNDS_NANOS[i])
+		return i;
+	return BUCKET_BOUNDS_NANOS.length;
+    }
+
+    private static LongAdder[] newBuckets() {
+	final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+	for (int i = 0; i < buckets.length; i++)
+	    buckets[i] = new LongAdder();
+	return buckets;
+    }
+
+    @Override
+    public String toString() {
+	return String.format("count=%1$d failures=%2$d mean=%3$.3fms max=%4$.3fms", getCount(), getFailures(),
+		getMeanMillis(), (double) getMaxNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -1,24 +1,28 @@
 package tech.lapsa.epayment.facade.beans;
 
-import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
-import javax.inject.Inject;
-import javax.jms.Destination;
+import javax.interceptor.Interceptors;
 
 import tech.lapsa.epayment.domain.Invoice;
 import tech.lapsa.epayment.facade.NotificationFacade;
 import tech.lapsa.epayment.facade.NotificationFacade.NotificationFacadeLocal;
 import tech.lapsa.epayment.facade.NotificationFacade.NotificationFacadeRemote;
-import tech.lapsa.epayment.shared.jms.EpaymentDestinations;
+import tech.lapsa.epayment.facade.beans.NotificationRoutesBean.NotificationRoute;
 import tech.lapsa.java.commons.exceptions.IllegalArgument;
-import tech.lapsa.java.commons.function.MyExceptions;
 import tech.lapsa.java.commons.function.MyObjects;
-import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
 import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
 
 @Stateless(name = NotificationFacade.BEAN_NAME)
+@LocalBean
+@Interceptors(FacadeMetricsInterceptor.class)
 public class NotificationFacadeBean implements NotificationFacadeLocal, NotificationFacadeRemote {
 
     // READERS
@@ -35,57 +39,57 @@ public class NotificationFacadeBean implements NotificationFacadeLocal, Notifica
 	}
     }
 
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void sendAll(final Collection<Notification> notifications) throws IllegalArgument {
+	try {
+	    _sendAll(notifications);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgument(e);
+	}
+    }
+
     // PRIVATE
 
     private void _send(final Notification notification) throws IllegalArgumentException {
 	MyObjects.requireNonNull(notification, "notification");
-	final Destination destination = resolveDestination(notification);
-	final JmsEventNotificatorClient<Invoice> notificator = jmsFactory.createEventNotificator(destination);
-	notificator.eventNotify(notification.getEntity(), notification.getProperties());
+	_sendRouted(notification);
     }
 
-    @Inject
-    private JmsClientFactory jmsFactory;
+    // every notification is routed before the first is sent, so a rejected batch has sent nothing
+    private void _sendAll(final Collection<Notification> notifications) throws IllegalArgumentException {
+	MyObjects.requireNonNull(notifications, "notifications");
+	final List<NotificationRoute> resolved = new ArrayList<>(notifications.size());
+	for (final Notification notification : notifications)
+	    resolved.add(routes.resolve(MyObjects.requireNonNull(notification, "notification")));
+	int i = 0;
+	for (final Notification notification : notifications)
+	    _sendRouted(resolved.get(i++), notification);
+    }
 
-    @Resource(name = EpaymentDestinations.NOTIFIER_PAYMENTLINK_REQUESTER_EMAIL)
-    private Destination paymentLinkUserEmail;
+    private void _sendRouted(final Notification notification) throws IllegalArgumentException {
+	_sendRouted(routes.resolve(notification), notification);
+    }
 
-    @Resource(name = EpaymentDestinations.NOTIFIER_PAYMENTSUCCESS_REQUESTER_EMAIL)
-    private Destination paymentSucessUserEmail;
+    private void _sendRouted(final NotificationRoute route, final Notification notification) {
+	for (int i = 0; i < route.size(); i++)
+	    _sendTo(route.getNotificator(i), route.getMetricsName(i), notification);
+    }
 
-    private Destination resolveDestination(final Notification notification) throws IllegalArgumentException {
-	MyObjects.requireNonNull(notification, "notification");
-	out: switch (notification.getEvent()) {
-	case PAYMENT_SUCCESS:
-	    switch (notification.getChannel()) {
-	    case EMAIL:
-		switch (notification.getRecipientType()) {
-		case REQUESTER:
-		    return paymentSucessUserEmail;
-		case COMPANY:
-		    break out;
-		}
-		break out;
-	    }
-	    break out;
-	case PAYMENT_LINK:
-	    switch (notification.getChannel()) {
-	    case EMAIL:
-		switch (notification.getRecipientType()) {
-		case REQUESTER:
-		    return paymentLinkUserEmail;
-		case COMPANY:
-		    break out;
-		}
-		break out;
-	    }
-	    break out;
+    private void _sendTo(final JmsEventNotificatorClient<Invoice> notificator, final String metricsName,
+	    final Notification notification) {
+	final long started = System.nanoTime();
+	boolean failed = true;
+	try {
+	    notificator.eventNotify(notification.getEntity(), notification.getProperties());
+	    failed = false;
+	} finally {
+	    metrics.recordLatency(metricsName, System.nanoTime() - started, failed);
 	}
-	throw MyExceptions.format(IllegalArgumentException::new,
-		"Can't resolve Destination for channel '%2$s' recipient '%3$s' stage '%1$s'",
-		notification.getEvent(), // 1
-		notification.getChannel(), // 2
-		notification.getRecipientType() // 3
-	);
     }
+
+    @EJB
+    private NotificationRoutesBean routes;
+
+    @EJB
+    private FacadeMetricsBean metrics;
 }
@@ -0,0 +1,120 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.epayment.facade.NotificationFacade;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+// notifications are taken over when the transaction commits and dispatched right away, the notifications of one
+// invoice are dispatched in the order they were committed
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class NotificationOutboxBean {
+
+    static final String PROPERTY_OUTBOX_MAX_PENDING = "notification-outbox.max-pending";
+    static final String PROPERTY_OUTBOX_MAX_WAIT_MILLIS = "notification-outbox.max-wait-millis";
+    static final String PROPERTY_OUTBOX_LINGER_MILLIS = "notification-outbox.linger-millis";
+    static final String PROPERTY_OUTBOX_BATCH_SIZE = "notification-outbox.batch-size";
+    static final String PROPERTY_OUTBOX_MAX_ATTEMPTS = "notification-outbox.max-attempts";
+    static final String PROPERTY_OUTBOX_INITIAL_BACKOFF_MILLIS = "notification-outbox.initial-backoff-millis";
+    static final String PROPERTY_OUTBOX_MAX_BACKOFF_MILLIS = "notification-outbox.max-backoff-millis";
+
+    static final int DEFAULT_OUTBOX_MAX_PENDING = 10_000;
+    static final long DEFAULT_OUTBOX_MAX_WAIT_MILLIS = 5_000;
+    static final long DEFAULT_OUTBOX_LINGER_MILLIS = 1_000;
+    static final int DEFAULT_OUTBOX_BATCH_SIZE = 100;
+    static final int DEFAULT_OUTBOX_MAX_ATTEMPTS = 5;
+    static final long DEFAULT_OUTBOX_INITIAL_BACKOFF_MILLIS = 1_000;
+    static final long DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS = 60_000;
+
+    // MODIFIERS
+
+    // the notification is dispatched only after the current transaction commits, a full outbox makes the caller wait
+    // and fails it when there is still no room after the max wait
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void enqueue(final Notification notification) throws IllegalArgumentException, IllegalStateException {
+	outbox.add(notification);
+    }
+
+    // READERS
+
+    public int getPendingCount() {
+	return outbox.getPendingCount();
+    }
+
+    public long getDispatchedCount() {
+	return outbox.getPublishedCount();
+    }
+
+    public long getRetriedCount() {
+	return outbox.getRetriedCount();
+    }
+
+    public long getDroppedCount() {
+	return outbox.getDroppedCount();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(NotificationFacade.class) //
+	    .build();
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @EJB
+    private NotificationFacadeBean notifications;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private Outbox<Notification> outbox;
+
+    @PostConstruct
+    public void init() {
+	final Outbox.Limits limits = new Outbox.Limits(
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_OUTBOX_BATCH_SIZE, DEFAULT_OUTBOX_BATCH_SIZE),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_OUTBOX_LINGER_MILLIS, DEFAULT_OUTBOX_LINGER_MILLIS),
+		true,
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_OUTBOX_MAX_PENDING, DEFAULT_OUTBOX_MAX_PENDING),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_OUTBOX_MAX_WAIT_MILLIS,
+			DEFAULT_OUTBOX_MAX_WAIT_MILLIS),
+		ConfigProperties.intOf(epaymentConfig, PROPERTY_OUTBOX_MAX_ATTEMPTS, DEFAULT_OUTBOX_MAX_ATTEMPTS),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_OUTBOX_INITIAL_BACKOFF_MILLIS,
+			DEFAULT_OUTBOX_INITIAL_BACKOFF_MILLIS),
+		ConfigProperties.longOf(epaymentConfig, PROPERTY_OUTBOX_MAX_BACKOFF_MILLIS,
+			DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS));
+	outbox = new Outbox<>("notification-outbox", registry, executor, NotificationOutboxBean::keyOf,
+		notifications::sendAll, limits, metrics, logger);
+	outbox.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+	outbox.stop();
+    }
+
+    private static String keyOf(final Notification notification) {
+	return notification.getEntity() == null ? "" : notification.getEntity().getNumber();
+    }
+}
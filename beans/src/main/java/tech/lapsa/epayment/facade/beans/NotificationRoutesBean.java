@@ -0,0 +1,208 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.jms.Destination;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.facade.NotificationFacade;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationChannel;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationEventType;
+import tech.lapsa.epayment.facade.NotificationFacade.Notification.NotificationRecipientType;
+import tech.lapsa.epayment.shared.jms.EpaymentDestinations;
+import tech.lapsa.java.commons.function.MyExceptions;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class NotificationRoutesBean {
+
+    // notification.route.<EVENT>.<CHANNEL>.<RECIPIENT> = jndi-name[, jndi-name...]
+    static final String PROPERTY_ROUTE_PREFIX = "notification.route.";
+
+    static final String METRICS_PREFIX = "notification.send.";
+
+    private static final NotificationEventType[] EVENTS = NotificationEventType.values();
+    private static final NotificationChannel[] CHANNELS = NotificationChannel.values();
+    private static final NotificationRecipientType[] RECIPIENTS = NotificationRecipientType.values();
+
+    // READERS
+
+    public NotificationRoute resolve(final Notification notification) throws IllegalArgumentException {
+	MyObjects.requireNonNull(notification, "notification");
+	final NotificationRoute route = routes[index(notification.getEvent(),
+		notification.getChannel(),
+		notification.getRecipientType())];
+	if (route == null)
+	    throw MyExceptions.format(IllegalArgumentException::new,
+		    "Can't resolve Destination for channel '%2$s' recipient '%3$s' stage '%1$s'",
+		    notification.getEvent(), // 1
+		    notification.getChannel(), // 2
+		    notification.getRecipientType() // 3
+	    );
+	return route;
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(NotificationFacade.class) //
+	    .build();
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    @Inject
+    private JmsClientFactory jmsFactory;
+
+    private NotificationRoute[] routes;
+
+    // one client per destination for the lifetime of the application, the clients keep no per-call state
+    private final Map<Destination, JmsEventNotificatorClient<Invoice>> notificators = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+	final NotificationRoute[] temp = new NotificationRoute[EVENTS.length * CHANNELS.length * RECIPIENTS.length];
+
+	// the default routes are configured the same way, a configured route replaces the default one
+	final Properties routeConfig = new Properties(defaultRoutes());
+	if (epaymentConfig != null)
+	    for (final String name : epaymentConfig.stringPropertyNames())
+		if (name.startsWith(PROPERTY_ROUTE_PREFIX))
+		    routeConfig.setProperty(name, epaymentConfig.getProperty(name));
+	for (final String name : routeConfig.stringPropertyNames())
+	    configureRoute(temp, routeConfig, name);
+
+	routes = temp;
+    }
+
+    @PreDestroy
+    public void destroy() {
+	for (final JmsEventNotificatorClient<Invoice> notificator : notificators.values())
+	    if (notificator instanceof AutoCloseable)
+		try {
+		    ((AutoCloseable) notificator).close();
+		} catch (final Exception e) {
+		    logger.FINE.log("Notificator close failed - %1$s", e.getMessage());
+		}
+	notificators.clear();
+    }
+
+    // a destination routed more than once shares its notificator
+    private NotificationRoute newRoute(final String[] names, final Destination[] destinations) {
+	@SuppressWarnings("unchecked")
+	final JmsEventNotificatorClient<Invoice>[] routeNotificators = //
+		new JmsEventNotificatorClient[destinations.length];
+	for (int i = 0; i < destinations.length; i++)
+	    routeNotificators[i] = notificators.computeIfAbsent(destinations[i], jmsFactory::createEventNotificator);
+	return new NotificationRoute(names, routeNotificators);
+    }
+
+    private static Properties defaultRoutes() {
+	final Properties defaults = new Properties();
+	defaults.setProperty(routeProperty(NotificationEventType.PAYMENT_LINK, NotificationChannel.EMAIL,
+		NotificationRecipientType.REQUESTER), EpaymentDestinations.NOTIFIER_PAYMENTLINK_REQUESTER_EMAIL);
+	defaults.setProperty(routeProperty(NotificationEventType.PAYMENT_SUCCESS, NotificationChannel.EMAIL,
+		NotificationRecipientType.REQUESTER), EpaymentDestinations.NOTIFIER_PAYMENTSUCCESS_REQUESTER_EMAIL);
+	return defaults;
+    }
+
+    private static String routeProperty(final NotificationEventType event,
+	    final NotificationChannel channel,
+	    final NotificationRecipientType recipient) {
+	return PROPERTY_ROUTE_PREFIX + event + "." + channel + "." + recipient;
+    }
+
+    private void configureRoute(final NotificationRoute[] temp, final Properties routeConfig,
+	    final String propertyName) {
+	final String[] key = propertyName.substring(PROPERTY_ROUTE_PREFIX.length()).split("\\.");
+	final NotificationEventType event;
+	final NotificationChannel channel;
+	final NotificationRecipientType recipient;
+	try {
+	    if (key.length != 3)
+		throw new IllegalArgumentException("Route key must be <EVENT>.<CHANNEL>.<RECIPIENT>");
+	    event = NotificationEventType.valueOf(key[0]);
+	    channel = NotificationChannel.valueOf(key[1]);
+	    recipient = NotificationRecipientType.valueOf(key[2]);
+	} catch (final IllegalArgumentException e) {
+	    logger.WARNING.log("Notification route '%1$s' ignored - %2$s", propertyName, e.getMessage());
+	    return;
+	}
+
+	final List<String> names = ConfigProperties.listOf(routeConfig, propertyName);
+	if (names.isEmpty()) {
+	    temp[index(event, channel, recipient)] = null;
+	    logger.INFO.log("Notification route %1$s/%2$s/%3$s disabled", event, channel, recipient);
+	    return;
+	}
+
+	final List<Destination> destinations = new ArrayList<>(names.size());
+	try {
+	    for (final String name : names)
+		destinations.add(InitialContext.doLookup(name));
+	} catch (final NamingException | ClassCastException e) {
+	    throw new RuntimeException("Notification route destination lookup failed " + names, e);
+	}
+
+	temp[index(event, channel, recipient)] = newRoute(names.toArray(new String[names.size()]),
+		destinations.toArray(new Destination[destinations.size()]));
+	logger.INFO.log("Notification route %1$s/%2$s/%3$s -> %4$s", event, channel, recipient, names);
+    }
+
+    private static int index(final NotificationEventType event,
+	    final NotificationChannel channel,
+	    final NotificationRecipientType recipient) {
+	return (event.ordinal() * CHANNELS.length + channel.ordinal()) * RECIPIENTS.length + recipient.ordinal();
+    }
+
+    public static final class NotificationRoute {
+
+	private final String[] names;
+	private final String[] metricsNames;
+	private final JmsEventNotificatorClient<Invoice>[] notificators;
+
+	private NotificationRoute(final String[] names, final JmsEventNotificatorClient<Invoice>[] notificators) {
+	    this.names = names;
+	    this.notificators = notificators;
+	    metricsNames = new String[names.length];
+	    for (int i = 0; i < names.length; i++)
+		metricsNames[i] = METRICS_PREFIX + names[i];
+	}
+
+	public int size() {
+	    return notificators.length;
+	}
+
+	public JmsEventNotificatorClient<Invoice> getNotificator(final int index) {
+	    return notificators[index];
+	}
+
+	public String getName(final int index) {
+	    return names[index];
+	}
+
+	public String getMetricsName(final int index) {
+	    return metricsNames[index];
+	}
+    }
+}
@@ -0,0 +1,456 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyExceptions;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+// messages taken over when the current transaction commits and sent in batches by the executor only, the messages
+// of one key are sent in the order they were committed, a producer over the pending limit waits for room
+final class Outbox<E> {
+
+    @FunctionalInterface
+    interface Sender<E> {
+
+	// a rejected batch is sent again one message at a time so only the rejected message is dropped, a failed
+	// one is retried
+	void send(List<E> batch) throws IllegalArgument;
+
+	// a sender of single messages gets every message on its own, so a failed one doesn't get the ones sent
+	// before it in the same batch sent again
+	default boolean sendsBatches() {
+	    return true;
+	}
+
+	static <E> Sender<E> eachOf(final Consumer<E> send) {
+	    return new OneByOne<>(send);
+	}
+    }
+
+    private static final class OneByOne<E> implements Sender<E> {
+
+	private final Consumer<E> send;
+
+	private OneByOne(final Consumer<E> send) {
+	    this.send = MyObjects.requireNonNull(send, "send");
+	}
+
+	@Override
+	public void send(final List<E> batch) {
+	    batch.forEach(send);
+	}
+
+	@Override
+	public boolean sendsBatches() {
+	    return false;
+	}
+    }
+
+    static final class Limits {
+
+	private final int batchSize;
+	private final long lingerMillis;
+	private final boolean flushOnAccept;
+	private final int maxPending;
+	private final long maxWaitMillis;
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	// with flush on accept the messages are sent as soon as they are committed and the linger task only picks up
+	// what a rejected drain left behind, otherwise a partial batch waits for the linger time at most
+	Limits(final int batchSize,
+		final long lingerMillis,
+		final boolean flushOnAccept,
+		final int maxPending,
+		final long maxWaitMillis,
+		final int maxAttempts,
+		final long initialBackoffMillis,
+		final long maxBackoffMillis) throws IllegalArgumentException {
+	    if (batchSize <= 0 || lingerMillis <= 0 || maxPending <= 0 || maxAttempts <= 0)
+		throw new IllegalArgumentException(
+			"Outbox batch size, linger, pending limit and attempts must be positive");
+	    this.batchSize = batchSize;
+	    this.lingerMillis = lingerMillis;
+	    this.flushOnAccept = flushOnAccept;
+	    this.maxPending = maxPending;
+	    this.maxWaitMillis = maxWaitMillis;
+	    this.maxAttempts = maxAttempts;
+	    this.initialBackoffMillis = initialBackoffMillis;
+	    this.maxBackoffMillis = maxBackoffMillis;
+	}
+    }
+
+    private final String name;
+    private final TransactionSynchronizationRegistry registry;
+    private final ManagedScheduledExecutorService executor;
+    private final Function<? super E, String> keyOf;
+    private final Sender<E> sender;
+    private final Limits limits;
+    private final FacadeMetricsBean metrics;
+    private final MyLogger logger;
+    private final Object txResourceKey;
+    private final String lagMetricsName;
+
+    // keys in the order of their oldest pending message, a busy key is being sent and is skipped by the others
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Lane<E>> lanes = new LinkedHashMap<>();
+    private int pendingCount;
+
+    // a single drainer at a time, a drain asked for while one runs is done by that one before it stops
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private ScheduledFuture<?> lingerTask;
+
+    Outbox(final String name,
+	    final TransactionSynchronizationRegistry registry,
+	    final ManagedScheduledExecutorService executor,
+	    final Function<? super E, String> keyOf,
+	    final Sender<E> sender,
+	    final Limits limits,
+	    final FacadeMetricsBean metrics,
+	    final MyLogger logger) {
+	this.name = MyStrings.requireNonEmpty(name, "name");
+	this.registry = MyObjects.requireNonNull(registry, "registry");
+	this.executor = MyObjects.requireNonNull(executor, "executor");
+	this.keyOf = MyObjects.requireNonNull(keyOf, "keyOf");
+	this.sender = MyObjects.requireNonNull(sender, "sender");
+	this.limits = MyObjects.requireNonNull(limits, "limits");
+	this.metrics = MyObjects.requireNonNull(metrics, "metrics");
+	this.logger = MyObjects.requireNonNull(logger, "logger");
+	this.txResourceKey = Outbox.class.getName() + "." + name;
+	this.lagMetricsName = name + ".lag";
+    }
+
+    void start() {
+	lingerTask = executor.scheduleWithFixedDelay(this::drain, limits.lingerMillis, limits.lingerMillis,
+		TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+	if (lingerTask != null)
+	    lingerTask.cancel(false);
+	drain();
+	final int left = getPendingCount();
+	if (left > 0)
+	    logger.WARNING.log("Outbox '%1$s' stopped with %2$d messages unsent", name, left);
+    }
+
+    // the message is taken over only after the current transaction commits, over the pending limit the caller waits
+    // for room up to the max wait and fails after it, so the transaction producing the message is rolled back
+    void add(final E message) throws IllegalArgumentException, IllegalStateException {
+	MyObjects.requireNonNull(message, "message");
+	awaitRoom();
+
+	if (registry.getTransactionKey() == null) {
+	    accept(Collections.singletonList(message));
+	    return;
+	}
+
+	@SuppressWarnings("unchecked")
+	List<E> recorded = (List<E>) registry.getResource(txResourceKey);
+	if (recorded == null) {
+	    final List<E> created = new ArrayList<>();
+	    registry.putResource(txResourceKey, created);
+	    registry.registerInterposedSynchronization(new Synchronization() {
+
+		@Override
+		public void beforeCompletion() {
+		}
+
+		@Override
+		public void afterCompletion(final int status) {
+		    if (status == Status.STATUS_COMMITTED)
+			accept(created);
+		    else
+			logger.FINE.log("Transaction rolled back, %1$d messages of outbox '%2$s' discarded",
+				created.size(), name);
+		}
+	    });
+	    recorded = created;
+	}
+	recorded.add(message);
+    }
+
+    int getPendingCount() {
+	synchronized (lock) {
+	    return pendingCount;
+	}
+    }
+
+    // age of the oldest message not yet sent
+    long getLagMillis() {
+	final long now = System.nanoTime();
+	long oldest = now;
+	synchronized (lock) {
+	    for (final Lane<E> lane : lanes.values()) {
+		final Pending<E> head = lane.messages.peekFirst();
+		if (head != null && head.committed - oldest < 0)
+		    oldest = head.committed;
+	    }
+	}
+	return TimeUnit.NANOSECONDS.toMillis(now - oldest);
+    }
+
+    long getPublishedCount() {
+	return published.get();
+    }
+
+    long getBatchCount() {
+	return batches.get();
+    }
+
+    long getRetriedCount() {
+	return retried.get();
+    }
+
+    long getDroppedCount() {
+	return dropped.get();
+    }
+
+    // PRIVATE
+
+    private void awaitRoom() throws IllegalStateException {
+	final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.maxWaitMillis);
+	synchronized (lock) {
+	    long left;
+	    while (pendingCount >= limits.maxPending) {
+		left = deadline - System.nanoTime();
+		if (left <= 0)
+		    throw MyExceptions.illegalStateFormat("Outbox '%1$s' is full with %2$d messages", name,
+			    pendingCount);
+		try {
+		    TimeUnit.NANOSECONDS.timedWait(lock, left);
+		} catch (final InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw MyExceptions.illegalStateFormat("Interrupted waiting for room in outbox '%1$s'", name);
+		}
+	    }
+	}
+    }
+
+    // runs in the committing thread, so it only queues, the messages of transactions let in below the pending limit
+    // may take the count over it
+    private void accept(final List<E> messages) {
+	if (messages.isEmpty())
+	    return;
+	final long committed = System.nanoTime();
+	final boolean full;
+	synchronized (lock) {
+	    for (final E message : messages)
+		queue(new Pending<>(keyOf.apply(message), message, committed));
+	    full = pendingCount >= limits.batchSize;
+	}
+	if (limits.flushOnAccept || full)
+	    try {
+		executor.execute(this::drain);
+	    } catch (final RejectedExecutionException e) {
+		// the linger task drains it then
+	    }
+    }
+
+    // caller holds the lock
+    private void queue(final Pending<E> p) {
+	lanes.computeIfAbsent(p.key, x -> new Lane<>()).messages.addLast(p);
+	pendingCount++;
+    }
+
+    private void drain() {
+	drainRequested.set(true);
+	while (drainRequested.get() && drainLock.tryLock())
+	    try {
+		drainRequested.set(false);
+		List<List<Pending<E>>> batch;
+		while (!(batch = take()).isEmpty())
+		    send(batch);
+	    } catch (final RuntimeException e) {
+		logger.WARNING.log("Outbox '%1$s' drain failed - %2$s", name, e.getMessage());
+	    } finally {
+		drainLock.unlock();
+	    }
+    }
+
+    // the ready messages up to the batch size grouped by key, the keys taken are busy until sent
+    private List<List<Pending<E>>> take() {
+	final long now = System.nanoTime();
+	final List<List<Pending<E>>> batch = new ArrayList<>();
+	synchronized (lock) {
+	    int taken = 0;
+	    for (final Lane<E> lane : lanes.values()) {
+		if (taken >= limits.batchSize)
+		    break;
+		if (lane.busy || lane.messages.isEmpty() || lane.messages.peekFirst().notBefore - now > 0)
+		    continue;
+		final List<Pending<E>> messages = new ArrayList<>();
+		while (taken < limits.batchSize && !lane.messages.isEmpty()) {
+		    messages.add(lane.messages.pollFirst());
+		    taken++;
+		}
+		lane.busy = true;
+		batch.add(messages);
+	    }
+	    pendingCount -= taken;
+	    if (taken > 0)
+		lock.notifyAll();
+	}
+	return batch;
+    }
+
+    private void send(final List<List<Pending<E>>> batch) {
+	final List<E> messages = new ArrayList<>();
+	batch.forEach(keyed -> keyed.forEach(p -> messages.add(p.message)));
+	batches.incrementAndGet();
+	if (!sender.sendsBatches()) {
+	    batch.forEach(this::sendOneByOne);
+	    return;
+	}
+	try {
+	    sender.send(messages);
+	} catch (final IllegalArgument e) {
+	    if (messages.size() > 1)
+		logger.INFO.log("Outbox '%1$s' batch of %2$d rejected, sending one by one - %3$s", name,
+			messages.size(), e.getMessage());
+	    batch.forEach(this::sendOneByOne);
+	    return;
+	} catch (final RuntimeException e) {
+	    logger.INFO.log("Outbox '%1$s' batch of %2$d failed - %3$s", name, messages.size(), e.getMessage());
+	    batch.forEach(keyed -> failed(keyed, 0));
+	    return;
+	}
+	batch.forEach(keyed -> {
+	    keyed.forEach(this::sent);
+	    release(keyed.get(0).key, Collections.emptyList());
+	});
+    }
+
+    // the messages of one busy key, a rejected one is dropped, a failed one stops the key until it is retried
+    private void sendOneByOne(final List<Pending<E>> keyed) {
+	for (int i = 0; i < keyed.size(); i++) {
+	    final Pending<E> p = keyed.get(i);
+	    try {
+		sender.send(Collections.singletonList(p.message));
+	    } catch (final IllegalArgument e) {
+		p.attempt++;
+		drop(p, e.getMessage());
+		continue;
+	    } catch (final RuntimeException e) {
+		logger.INFO.log("Outbox '%1$s' message for '%2$s' failed - %3$s", name, p.key, e.getMessage());
+		failed(keyed, i);
+		return;
+	    }
+	    sent(p);
+	}
+	release(keyed.get(0).key, Collections.emptyList());
+    }
+
+    // the messages from the failed one on go back in front of the ones committed meanwhile, only the failed one is
+    // charged an attempt, the ones behind it were never tried
+    private void failed(final List<Pending<E>> keyed, final int from) {
+	final List<Pending<E>> back = new ArrayList<>(keyed.subList(from, keyed.size()));
+	final Pending<E> head = back.get(0);
+	if (++head.attempt >= limits.maxAttempts) {
+	    drop(head, "attempts exhausted");
+	    back.remove(0);
+	    release(head.key, back);
+	    if (!back.isEmpty())
+		requestDrain(0);
+	    return;
+	}
+	retried.incrementAndGet();
+	final long backoff = backoffMillis(head.attempt);
+	head.notBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+	release(head.key, back);
+	requestDrain(backoff);
+    }
+
+    private void requestDrain(final long delayMillis) {
+	try {
+	    executor.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+	} catch (final RejectedExecutionException e) {
+	    // the linger task drains it then
+	}
+    }
+
+    private void release(final String key, final List<Pending<E>> back) {
+	synchronized (lock) {
+	    final Lane<E> lane = lanes.get(key);
+	    if (lane == null)
+		return;
+	    for (int i = back.size() - 1; i >= 0; i--)
+		lane.messages.addFirst(back.get(i));
+	    pendingCount += back.size();
+	    lane.busy = false;
+	    if (lane.messages.isEmpty())
+		lanes.remove(key);
+	    else if (!back.isEmpty()) {
+		// to the end so the keys behind it are not held back by its backoff
+		lanes.remove(key);
+		lanes.put(key, lane);
+	    }
+	}
+    }
+
+    private void sent(final Pending<E> p) {
+	published.incrementAndGet();
+	metrics.recordLatency(lagMetricsName, System.nanoTime() - p.committed, false);
+    }
+
+    private void drop(final Pending<E> p, final String reason) {
+	dropped.incrementAndGet();
+	logger.SEVERE.log("Outbox '%1$s' message for '%2$s' dropped after %3$d attempts - %4$s", name, p.key,
+		p.attempt, reason);
+    }
+
+    private long backoffMillis(final int attempt) {
+	final long backoff = limits.initialBackoffMillis << Math.min(attempt - 1, 20);
+	return Math.min(backoff, limits.maxBackoffMillis);
+    }
+
+    private static final class Lane<E> {
+
+	private final ArrayDeque<Pending<E>> messages = new ArrayDeque<>();
+	private boolean busy;
+    }
+
+    private static final class Pending<E> {
+
+	private final String key;
+	private final E message;
+	private final long committed;
+	private long notBefore;
+	private int attempt;
+
+	private Pending(final String key, final E message, final long committed) {
+	    this.key = key;
+	    this.message = message;
+	    this.committed = committed;
+	    this.notBefore = committed;
+	}
+    }
+}
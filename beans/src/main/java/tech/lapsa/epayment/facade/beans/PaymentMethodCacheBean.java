@@ -0,0 +1,231 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.jms.Topic;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.epayment.facade.PaymentMethod;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
+
+// prepared payment methods by the order they were rendered for, an invoice points at the order of its latest
+// payment method, so invalidating an order is a single key removal
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PaymentMethodCacheBean {
+
+    // the name invalidations of this cache carry on the invoice cache invalidation topic
+    static final String CACHE_NAME = "payment-method";
+
+    static final String PROPERTY_PAYMENT_METHOD_CACHE_SIZE = "payment-method-cache.size";
+    static final String PROPERTY_PAYMENT_METHOD_CACHE_TTL_SECONDS = "payment-method-cache.ttl-seconds";
+
+    static final int DEFAULT_PAYMENT_METHOD_CACHE_SIZE = 10_000;
+    static final long DEFAULT_PAYMENT_METHOD_CACHE_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(15);
+
+    // the consumer's email and language and the URIs make a variant, an invoice rarely has more than one
+    static final int MAX_VARIANTS_PER_ORDER = 8;
+
+    // READERS
+
+    public PaymentMethod get(final URI postbackURI,
+	    final URI failureURI,
+	    final URI returnURI,
+	    final Invoice forInvoice) {
+	final String orderNumber = orderByInvoice.getIfPresent(forInvoice.getNumber());
+	if (orderNumber == null)
+	    return null;
+	final OrderPaymentMethods cached = byOrder.getIfPresent(orderNumber);
+	return cached == null ? null : cached.variants.get(new Variant(postbackURI, failureURI, returnURI, forInvoice));
+    }
+
+    public long getHitCount() {
+	return byOrder.getHits();
+    }
+
+    public int getSize() {
+	return byOrder.size();
+    }
+
+    // MODIFIERS
+
+    // cached once the current transaction commits, the order may have been created within it
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void put(final URI postbackURI,
+	    final URI failureURI,
+	    final URI returnURI,
+	    final Invoice forInvoice,
+	    final String orderNumber,
+	    final PaymentMethod paymentMethod) {
+	MyStrings.requireNonEmpty(orderNumber, "orderNumber");
+	MyObjects.requireNonNull(paymentMethod, "paymentMethod");
+	final String invoiceNumber = MyStrings.requireNonEmpty(forInvoice.getNumber(), "invoiceNumber");
+	final Variant variant = new Variant(postbackURI, failureURI, returnURI, forInvoice);
+
+	if (registry.getTransactionKey() == null) {
+	    store(invoiceNumber, orderNumber, variant, paymentMethod);
+	    return;
+	}
+	registry.registerInterposedSynchronization(new Synchronization() {
+
+	    @Override
+	    public void beforeCompletion() {
+	    }
+
+	    @Override
+	    public void afterCompletion(final int status) {
+		if (status == Status.STATUS_COMMITTED)
+		    store(invoiceNumber, orderNumber, variant, paymentMethod);
+	    }
+	});
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void invalidateOrder(final String orderNumber) throws IllegalArgumentException {
+	invalidations.invalidate(orderNumber);
+    }
+
+    // called for the invalidation messages received from the topic, including the ones sent by this node
+    public void evict(final String[] orderNumbers) {
+	for (final String orderNumber : orderNumbers)
+	    byOrder.invalidate(orderNumber);
+	logger.FINE.log("Payment method cache invalidated with %1$d orders", orderNumbers.length);
+    }
+
+    // the Qazkom settings the payment methods were rendered with have changed
+    public void invalidateAll() {
+	byOrder.invalidateAll();
+	orderByInvoice.invalidateAll();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Inject
+    private JmsClientFactory jmsFactory;
+
+    @Resource(lookup = InvoiceCacheBean.JNDI_INVALIDATION_TOPIC)
+    private Topic invalidationTopic;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private ExpiringCache<String, OrderPaymentMethods> byOrder;
+    private ExpiringCache<String, String> orderByInvoice;
+
+    private CacheInvalidations invalidations;
+
+    @PostConstruct
+    public void init() {
+	final int size = ConfigProperties.intOf(epaymentConfig, PROPERTY_PAYMENT_METHOD_CACHE_SIZE,
+		DEFAULT_PAYMENT_METHOD_CACHE_SIZE);
+	final long ttl = ConfigProperties.longOf(epaymentConfig, PROPERTY_PAYMENT_METHOD_CACHE_TTL_SECONDS,
+		DEFAULT_PAYMENT_METHOD_CACHE_TTL_SECONDS);
+	byOrder = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(ttl), 0);
+	orderByInvoice = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(ttl), 0);
+	invalidations = new CacheInvalidations(CACHE_NAME, registry,
+		jmsFactory.createEventNotificator(invalidationTopic), byOrder::invalidate, logger);
+    }
+
+    // concurrent puts for one order may drop each other's variant, which only costs a later miss
+    private void store(final String invoiceNumber,
+	    final String orderNumber,
+	    final Variant variant,
+	    final PaymentMethod paymentMethod) {
+	final OrderPaymentMethods cached = byOrder.getIfPresent(orderNumber);
+	byOrder.put(orderNumber, cached == null //
+		? new OrderPaymentMethods(variant, paymentMethod)
+		: cached.with(variant, paymentMethod));
+	orderByInvoice.put(invoiceNumber, orderNumber);
+    }
+
+    // replaced as a whole on every put so readers never see it changing
+    private static final class OrderPaymentMethods {
+
+	private final Map<Variant, PaymentMethod> variants;
+
+	private OrderPaymentMethods(final Variant variant, final PaymentMethod paymentMethod) {
+	    variants = new LinkedHashMap<>(2);
+	    variants.put(variant, paymentMethod);
+	}
+
+	private OrderPaymentMethods(final Map<Variant, PaymentMethod> variants) {
+	    this.variants = variants;
+	}
+
+	private OrderPaymentMethods with(final Variant variant, final PaymentMethod paymentMethod) {
+	    final LinkedHashMap<Variant, PaymentMethod> copy = new LinkedHashMap<>(variants);
+	    copy.remove(variant);
+	    copy.put(variant, paymentMethod);
+	    if (copy.size() > MAX_VARIANTS_PER_ORDER)
+		copy.remove(copy.keySet().iterator().next());
+	    return new OrderPaymentMethods(copy);
+	}
+    }
+
+    // the rendered form also depends on the consumer's email and language
+    private static final class Variant {
+
+	private final String email;
+	private final String language;
+	private final URI postbackURI;
+	private final URI failureURI;
+	private final URI returnURI;
+	private final int hash;
+
+	private Variant(final URI postbackURI, final URI failureURI, final URI returnURI, final Invoice forInvoice) {
+	    this.email = forInvoice.optionalConsumerEmail().orElse("");
+	    this.language = forInvoice.getConsumerPreferLanguage().getTag();
+	    this.postbackURI = postbackURI;
+	    this.failureURI = failureURI;
+	    this.returnURI = returnURI;
+	    this.hash = Objects.hash(email, language, postbackURI, failureURI, returnURI);
+	}
+
+	@Override
+	public int hashCode() {
+	    return hash;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+	    if (this == obj)
+		return true;
+	    if (!(obj instanceof Variant))
+		return false;
+	    final Variant other = (Variant) obj;
+	    return hash == other.hash
+		    && Objects.equals(email, other.email)
+		    && Objects.equals(language, other.language)
+		    && Objects.equals(postbackURI, other.postbackURI)
+		    && Objects.equals(failureURI, other.failureURI)
+		    && Objects.equals(returnURI, other.returnURI);
+	}
+    }
+}
@@ -0,0 +1,146 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.java.commons.function.MyExceptions;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+
+final class PaymentURITemplate {
+
+    enum Placeholder {
+	INVOICE_ID(Invoice::getNumber),
+	INVOICE_NUMBER(Invoice::getNumber),
+	LANG(i -> i.getConsumerPreferLanguage().getTag()),
+	EXTERNAL_ID(Invoice::getExternalId),
+	AMOUNT(i -> i.getAmount() == null ? null
+		: BigDecimal.valueOf(i.getAmount()).stripTrailingZeros().toPlainString()),
+	CURRENCY(i -> i.getCurrency() == null ? null : i.getCurrency().getCurrencyCode());
+
+	private final Function<Invoice, String> extractor;
+
+	private Placeholder(final Function<Invoice, String> extractor) {
+	    this.extractor = extractor;
+	}
+
+	private String token() {
+	    return "@" + name() + "@";
+	}
+    }
+
+    static PaymentURITemplate compile(final String pattern) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(pattern, "pattern");
+
+	final List<Object> segments = new ArrayList<>();
+	final StringBuilder literal = new StringBuilder();
+	int pos = 0;
+	while (pos < pattern.length()) {
+	    final Placeholder placeholder = placeholderAt(pattern, pos);
+	    if (placeholder == null) {
+		literal.append(pattern.charAt(pos++));
+		continue;
+	    }
+	    if (literal.length() > 0) {
+		segments.add(literal.toString());
+		literal.setLength(0);
+	    }
+	    segments.add(placeholder);
+	    pos += placeholder.token().length();
+	}
+	if (literal.length() > 0)
+	    segments.add(literal.toString());
+
+	return new PaymentURITemplate(pattern, segments.toArray());
+    }
+
+    private final String pattern;
+    // String literals and Placeholder values
+    private final Object[] segments;
+    // segments before this index depend on the language only
+    private final int languagePrefixEnd;
+    private final int estimatedLength;
+
+    private final ConcurrentMap<String, String> languagePrefixes = new ConcurrentHashMap<>();
+
+    private PaymentURITemplate(final String pattern, final Object[] segments) {
+	this.pattern = pattern;
+	this.segments = segments;
+	int end = 0;
+	while (end < segments.length && (segments[end] instanceof String || segments[end] == Placeholder.LANG))
+	    end++;
+	this.languagePrefixEnd = end;
+	this.estimatedLength = pattern.length() + 32;
+    }
+
+    URI render(final Invoice invoice) throws IllegalArgumentException {
+	MyObjects.requireNonNull(invoice, "invoice");
+
+	final String lang = invoice.getConsumerPreferLanguage().getTag();
+	final StringBuilder sb = new StringBuilder(estimatedLength);
+	sb.append(languagePrefixes.computeIfAbsent(lang, this::renderLanguagePrefix));
+	for (int i = languagePrefixEnd; i < segments.length; i++)
+	    append(sb, segments[i], invoice);
+
+	try {
+	    return new URI(sb.toString());
+	} catch (final URISyntaxException e) {
+	    throw MyExceptions.illegalArgumentFormat("Invalid payment URI rendered from pattern '%1$s' - %2$s",
+		    pattern, e.getMessage());
+	}
+    }
+
+    @Override
+    public String toString() {
+	return pattern;
+    }
+
+    // PRIVATE
+
+    private String renderLanguagePrefix(final String lang) {
+	final StringBuilder sb = new StringBuilder(estimatedLength);
+	for (int i = 0; i < languagePrefixEnd; i++)
+	    if (segments[i] instanceof String)
+		sb.append((String) segments[i]);
+	    else
+		sb.append(encode(lang));
+	return sb.toString();
+    }
+
+    private static void append(final StringBuilder sb, final Object segment, final Invoice invoice) {
+	if (segment instanceof String)
+	    sb.append((String) segment);
+	else
+	    sb.append(encode(((Placeholder) segment).extractor.apply(invoice)));
+    }
+
+    private static String encode(final String value) {
+	if (value == null)
+	    return "";
+	try {
+	    return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).replace("+", "%20");
+	} catch (final UnsupportedEncodingException e) {
+	    // UTF-8 is always supported
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    private static Placeholder placeholderAt(final String pattern, final int pos) {
+	if (pattern.charAt(pos) != '@')
+	    return null;
+	for (final Placeholder placeholder : Placeholder.values())
+	    if (pattern.startsWith(placeholder.token(), pos))
+		return placeholder;
+	return null;
+    }
+}
@@ -0,0 +1,180 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.exceptions.IllegalState;
+import tech.lapsa.java.commons.function.MyObjects;
+import tech.lapsa.java.commons.function.MyStrings;
+
+// remembers the postbacks completed within the window by content hash and by order number
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PostbackIdempotencyBean {
+
+    static final String PROPERTY_IDEMPOTENCY_WINDOW_SECONDS = "qazkom-postback.idempotency-window-seconds";
+    static final String PROPERTY_IDEMPOTENCY_SIZE = "qazkom-postback.idempotency-size";
+    static final String PROPERTY_IDEMPOTENCY_TIMEOUT_MILLIS = "qazkom-postback.idempotency-timeout-millis";
+
+    static final long DEFAULT_IDEMPOTENCY_WINDOW_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    static final int DEFAULT_IDEMPOTENCY_SIZE = 10_000;
+    static final long DEFAULT_IDEMPOTENCY_TIMEOUT_MILLIS = 30_000;
+
+    @FunctionalInterface
+    public interface PostbackHandler {
+
+	// returns the order number of the completed postback
+	String handle(String postbackXml) throws IllegalArgument, IllegalState;
+    }
+
+    // MODIFIERS
+
+    // the handler runs once for concurrent identical postbacks and is skipped for the ones completed within the
+    // window, every caller gets the outcome of the first call
+    public void complete(final String postbackXml, final PostbackHandler handler)
+	    throws IllegalArgumentException, IllegalArgument, IllegalState {
+	MyStrings.requireNonEmpty(postbackXml, "postbackXml");
+	MyObjects.requireNonNull(handler, "handler");
+
+	final String hash = hashOf(postbackXml);
+	Outcome outcome = byContent.getIfPresent(hash);
+	if (outcome == null)
+	    outcome = flights.execute(hash, () -> handle(hash, postbackXml, handler));
+	else
+	    duplicates.incrementAndGet();
+	outcome.replay();
+    }
+
+    // to be called after the postback is committed
+    public void completed(final String postbackXml, final String orderNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(postbackXml, "postbackXml");
+	MyStrings.requireNonEmpty(orderNumber, "orderNumber");
+	byContent.put(hashOf(postbackXml), Outcome.COMPLETED);
+	byOrder.put(orderNumber, Outcome.COMPLETED);
+    }
+
+    public void invalidateAll() {
+	byContent.invalidateAll();
+	byOrder.invalidateAll();
+    }
+
+    // READERS
+
+    public boolean isDuplicate(final String postbackXml) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(postbackXml, "postbackXml");
+	if (byContent.getIfPresent(hashOf(postbackXml)) == null)
+	    return false;
+	duplicates.incrementAndGet();
+	return true;
+    }
+
+    public boolean isCompletedOrder(final String orderNumber) throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(orderNumber, "orderNumber");
+	if (byOrder.getIfPresent(orderNumber) == null)
+	    return false;
+	duplicates.incrementAndGet();
+	return true;
+    }
+
+    public long getDuplicateCount() {
+	return duplicates.get();
+    }
+
+    public int getSize() {
+	return byContent.size();
+    }
+
+    // PRIVATE
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private ExpiringCache<String, Outcome> byContent;
+    private ExpiringCache<String, Outcome> byOrder;
+    private SingleFlight<String, Outcome> flights;
+
+    private final AtomicLong duplicates = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+	final long window = ConfigProperties.longOf(epaymentConfig, PROPERTY_IDEMPOTENCY_WINDOW_SECONDS,
+		DEFAULT_IDEMPOTENCY_WINDOW_SECONDS);
+	final int size = ConfigProperties.intOf(epaymentConfig, PROPERTY_IDEMPOTENCY_SIZE, DEFAULT_IDEMPOTENCY_SIZE);
+	byContent = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(window), 0);
+	byOrder = new ExpiringCache<>(size, TimeUnit.SECONDS.toMillis(window), 0);
+	flights = new SingleFlight<>(ConfigProperties.longOf(epaymentConfig, PROPERTY_IDEMPOTENCY_TIMEOUT_MILLIS,
+		DEFAULT_IDEMPOTENCY_TIMEOUT_MILLIS));
+    }
+
+    // only completions are remembered, a rejection may depend on state that changes later
+    private Outcome handle(final String hash, final String postbackXml, final PostbackHandler handler) {
+	final Outcome previous = byContent.getIfPresent(hash);
+	if (previous != null)
+	    return previous;
+	final String orderNumber;
+	try {
+	    orderNumber = handler.handle(postbackXml);
+	} catch (final IllegalArgument e) {
+	    return Outcome.rejected(e);
+	} catch (final IllegalState e) {
+	    return Outcome.failed(e);
+	}
+	byContent.put(hash, Outcome.COMPLETED);
+	byOrder.put(orderNumber, Outcome.COMPLETED);
+	return Outcome.COMPLETED;
+    }
+
+    private static String hashOf(final String postbackXml) {
+	try {
+	    final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+	    return Base64.getEncoder().encodeToString(digest.digest(postbackXml.getBytes(StandardCharsets.UTF_8)));
+	} catch (final NoSuchAlgorithmException e) {
+	    // it should not happens
+	    throw new EJBException(e.getMessage());
+	}
+    }
+
+    private static final class Outcome {
+
+	private static final Outcome COMPLETED = new Outcome(null, null);
+
+	private static Outcome rejected(final IllegalArgument e) {
+	    return new Outcome(e, null);
+	}
+
+	private static Outcome failed(final IllegalState e) {
+	    return new Outcome(null, e);
+	}
+
+	private final IllegalArgument rejection;
+	private final IllegalState failure;
+
+	private Outcome(final IllegalArgument rejection, final IllegalState failure) {
+	    this.rejection = rejection;
+	    this.failure = failure;
+	}
+
+	private void replay() throws IllegalArgument, IllegalState {
+	    if (rejection != null)
+		throw rejection;
+	    if (failure != null)
+		throw failure;
+	}
+    }
+}
@@ -0,0 +1,156 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import tech.lapsa.java.commons.function.MyExceptions;
+import tech.lapsa.java.commons.function.MyObjects;
+
+// raw Qazkom documents as received from the bank
+final class QazkomDocuments {
+
+    // the XML declaration has to fit in here to be honoured
+    private static final int PROLOG_BYTES = 256;
+
+    private static final Pattern DECLARED_ENCODING = Pattern
+	    .compile("^<\\?xml[^>]*?\\sencoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']");
+
+    private QazkomDocuments() {
+    }
+
+    // decodes the document straight from the stream in the encoding its byte order mark or declaration tells
+    static String read(final InputStream document, final int maxBytes) throws IllegalArgumentException {
+	MyObjects.requireNonNull(document, "document");
+	final BufferedInputStream in = new BufferedInputStream(new LimitedInputStream(document, maxBytes),
+		PROLOG_BYTES);
+	final StringBuilder text = new StringBuilder(Math.min(maxBytes, 8 * 1024));
+	try {
+	    // not closed, the stream belongs to the caller
+	    final Reader reader = new InputStreamReader(in, encodingOf(in));
+	    final char[] buffer = new char[4 * 1024];
+	    int read;
+	    while ((read = reader.read(buffer)) != -1)
+		text.append(buffer, 0, read);
+	} catch (final LimitExceeded e) {
+	    throw MyExceptions.illegalArgumentFormat("Document exceeds %1$d bytes", maxBytes);
+	} catch (final IOException e) {
+	    throw MyExceptions.illegalArgumentFormat("Document can't be read - %1$s", e.getMessage());
+	}
+	if (text.length() == 0)
+	    throw MyExceptions.illegalArgumentFormat("Document is empty");
+	return text.toString();
+    }
+
+    // the head of the payload for logging, the whole payload is too large to log on every request
+    static String abbreviate(final String document, final int maxChars) {
+	if (document == null || document.length() <= maxChars)
+	    return document;
+	return document.substring(0, Math.max(maxChars, 0)) + "...(" + document.length() + " chars)";
+    }
+
+    // PRIVATE
+
+    // peeks at the prolog and leaves the stream right after the byte order mark, if any
+    private static Charset encodingOf(final BufferedInputStream in) throws IOException, IllegalArgumentException {
+	in.mark(PROLOG_BYTES);
+	final byte[] head = new byte[PROLOG_BYTES];
+	int length = 0;
+	int read;
+	while (length < head.length && (read = in.read(head, length, head.length - length)) != -1)
+	    length += read;
+	in.reset();
+
+	if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+	    skip(in, 3);
+	    return StandardCharsets.UTF_8;
+	}
+	if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+	    skip(in, 2);
+	    return StandardCharsets.UTF_16BE;
+	}
+	if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+	    skip(in, 2);
+	    return StandardCharsets.UTF_16LE;
+	}
+	if (length >= 2 && head[0] == 0 && head[1] == '<')
+	    return StandardCharsets.UTF_16BE;
+	if (length >= 2 && head[0] == '<' && head[1] == 0)
+	    return StandardCharsets.UTF_16LE;
+
+	// the declaration itself is ASCII in every encoding left
+	final Matcher m = DECLARED_ENCODING.matcher(new String(head, 0, length, StandardCharsets.ISO_8859_1));
+	if (!m.find())
+	    return StandardCharsets.UTF_8;
+	try {
+	    return Charset.forName(m.group(1));
+	} catch (final IllegalCharsetNameException | UnsupportedCharsetException e) {
+	    throw MyExceptions.illegalArgumentFormat("Document encoding is unsupported - %1$s", e.getMessage());
+	}
+    }
+
+    private static void skip(final InputStream in, final int bytes) throws IOException {
+	for (int i = 0; i < bytes; i++)
+	    in.read();
+    }
+
+    private static final class LimitExceeded extends IOException {
+
+	private static final long serialVersionUID = 1L;
+    }
+
+    // fails the read going over the limit instead of buffering the whole payload first
+    private static final class LimitedInputStream extends FilterInputStream {
+
+	private final int maxBytes;
+	private int count;
+
+	private LimitedInputStream(final InputStream in, final int maxBytes) {
+	    super(in);
+	    this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public int read() throws IOException {
+	    final int b = super.read();
+	    if (b != -1)
+		counted(1);
+	    return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+	    final int read = super.read(b, off, len);
+	    if (read > 0)
+		counted(read);
+	    return read;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+	    final long skipped = super.skip(n);
+	    counted(skipped);
+	    return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+	    return false;
+	}
+
+	private void counted(final long bytes) throws LimitExceeded {
+	    count += bytes;
+	    if (count > maxBytes)
+		throw new LimitExceeded();
+	}
+    }
+}
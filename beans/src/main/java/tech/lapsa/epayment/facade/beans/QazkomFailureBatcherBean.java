@@ -0,0 +1,214 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+// collects failure callbacks over a short window and processes them as one batch
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class QazkomFailureBatcherBean {
+
+    static final String PROPERTY_FAILURE_BATCH_WINDOW_MILLIS = "qazkom-failure.batch-window-millis";
+    static final String PROPERTY_FAILURE_BATCH_SIZE = "qazkom-failure.batch-size";
+    static final String PROPERTY_FAILURE_BATCH_TIMEOUT_MILLIS = "qazkom-failure.batch-timeout-millis";
+
+    static final long DEFAULT_FAILURE_BATCH_WINDOW_MILLIS = 200;
+    static final int DEFAULT_FAILURE_BATCH_SIZE = 200;
+    static final long DEFAULT_FAILURE_BATCH_TIMEOUT_MILLIS = 30_000;
+
+    // MODIFIERS
+
+    // blocks until the batch holding the failure is processed, returns the bank's error message
+    public String process(final String failureXml) throws IllegalArgumentException, IllegalArgument {
+	MyStrings.requireNonEmpty(failureXml, "failureXml");
+	final QazkomFailureResult result = await(submit(failureXml));
+	if (!result.isProcessed())
+	    throw new IllegalArgument(new IllegalArgumentException(result.getFailureMessage()));
+	return result.getMessage();
+    }
+
+    // READERS
+
+    public int getPendingCount() {
+	synchronized (lock) {
+	    return pending.size();
+	}
+    }
+
+    public long getBatchCount() {
+	return batches.get();
+    }
+
+    public long getProcessedCount() {
+	return processed.get();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private EpaymentFacadeBean facade;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+
+    private long windowMillis;
+    private int batchSize;
+    private long timeoutMillis;
+
+    @PostConstruct
+    public void init() {
+	windowMillis = ConfigProperties.longOf(epaymentConfig, PROPERTY_FAILURE_BATCH_WINDOW_MILLIS,
+		DEFAULT_FAILURE_BATCH_WINDOW_MILLIS);
+	batchSize = ConfigProperties.intOf(epaymentConfig, PROPERTY_FAILURE_BATCH_SIZE, DEFAULT_FAILURE_BATCH_SIZE);
+	timeoutMillis = ConfigProperties.longOf(epaymentConfig, PROPERTY_FAILURE_BATCH_TIMEOUT_MILLIS,
+		DEFAULT_FAILURE_BATCH_TIMEOUT_MILLIS);
+	if (batchSize <= 0)
+	    throw new EJBException("Failure batch size must be positive");
+    }
+
+    private Pending submit(final String failureXml) {
+	final Pending p = new Pending(failureXml);
+	final boolean opened;
+	final List<Pending> full;
+	synchronized (lock) {
+	    pending.add(p);
+	    opened = pending.size() == 1;
+	    if (pending.size() >= batchSize) {
+		full = pending;
+		pending = new ArrayList<>();
+	    } else
+		full = null;
+	}
+	if (full != null)
+	    schedule(() -> flush(full), 0);
+	else if (opened)
+	    schedule(() -> flush(null), windowMillis);
+	return p;
+    }
+
+    private void schedule(final Runnable task, final long delayMillis) {
+	try {
+	    if (delayMillis > 0)
+		executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	    else
+		executor.execute(task);
+	} catch (final RejectedExecutionException e) {
+	    // the caller's thread does the work then
+	    task.run();
+	}
+    }
+
+    // a null batch takes whatever is pending when the window closes
+    private void flush(final List<Pending> batch) {
+	final List<Pending> taken;
+	if (batch != null)
+	    taken = batch;
+	else
+	    synchronized (lock) {
+		taken = pending;
+		pending = new ArrayList<>();
+	    }
+	if (taken.isEmpty())
+	    return;
+
+	// the failures whose callers gave up waiting are processed by those callers
+	taken.removeIf(p -> !p.claimed.compareAndSet(false, true));
+	if (taken.isEmpty())
+	    return;
+
+	final List<String> failureXmls = new ArrayList<>(taken.size());
+	taken.forEach(p -> failureXmls.add(p.failureXml));
+	try {
+	    final List<QazkomFailureResult> results = facade.processQazkomFailures(failureXmls);
+	    for (final QazkomFailureResult result : results)
+		taken.get(result.getIndex()).result.complete(result);
+	    batches.incrementAndGet();
+	    processed.addAndGet(taken.size());
+	} catch (final IllegalArgument | RuntimeException e) {
+	    logger.WARNING.log("Failure batch of %1$d failed - %2$s", taken.size(), e.getMessage());
+	    taken.forEach(p -> p.result.completeExceptionally(e));
+	}
+    }
+
+    // past the timeout a failure no batch has taken yet is processed by the caller, one already taken is waited for
+    // as its batch may still commit
+    private QazkomFailureResult await(final Pending p) throws IllegalArgument {
+	try {
+	    try {
+		return p.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+	    } catch (final TimeoutException e) {
+		if (!p.claimed.compareAndSet(false, true)) {
+		    logger.WARNING.log("Failure batch is late over %1$d ms, waiting on", timeoutMillis);
+		    return p.result.get();
+		}
+	    }
+	} catch (final ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException)
+		throw (RuntimeException) e.getCause();
+	    if (e.getCause() instanceof IllegalArgument)
+		throw (IllegalArgument) e.getCause();
+	    throw new EJBException(e.getCause().getMessage());
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new EJBException("Interrupted waiting for the failure batch");
+	}
+
+	synchronized (lock) {
+	    pending.remove(p);
+	}
+	logger.WARNING.log("Failure batch is late over %1$d ms, processing inline", timeoutMillis);
+	final List<QazkomFailureResult> results = facade.processQazkomFailures(Collections.singletonList(p.failureXml));
+	return results.get(0);
+    }
+
+    private static final class Pending {
+
+	private final String failureXml;
+	private final CompletableFuture<QazkomFailureResult> result = new CompletableFuture<>();
+	// set by whoever processes the failure, the batch taking it or the caller giving up waiting
+	private final AtomicBoolean claimed = new AtomicBoolean();
+
+	private Pending(final String failureXml) {
+	    this.failureXml = failureXml;
+	}
+    }
+}
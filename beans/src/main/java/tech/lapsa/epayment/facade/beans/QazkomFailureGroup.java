@@ -0,0 +1,38 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tech.lapsa.epayment.domain.QazkomError;
+import tech.lapsa.java.commons.function.MyObjects;
+
+// the failures of one batch naming the same order, parsed once by the batch and processed in a transaction of
+// their own, package-private so the group entry point of the facade can't be called from outside the bean package
+final class QazkomFailureGroup {
+
+    private final String orderNumber;
+    private final List<Integer> indexes = new ArrayList<>();
+    private final List<QazkomError> errors = new ArrayList<>();
+
+    QazkomFailureGroup(final String orderNumber) {
+	this.orderNumber = orderNumber;
+    }
+
+    void add(final int index, final QazkomError error) throws IllegalArgumentException {
+	MyObjects.requireNonNull(error, "error");
+	indexes.add(index);
+	errors.add(error);
+    }
+
+    String getOrderNumber() {
+	return orderNumber;
+    }
+
+    List<Integer> getIndexes() {
+	return indexes;
+    }
+
+    List<QazkomError> getErrors() {
+	return errors;
+    }
+}
@@ -0,0 +1,50 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.Serializable;
+
+public final class QazkomFailureResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static QazkomFailureResult processed(final int index, final String message) {
+	return new QazkomFailureResult(index, true, message);
+    }
+
+    static QazkomFailureResult failed(final int index, final String failureMessage) {
+	return new QazkomFailureResult(index, false, failureMessage);
+    }
+
+    private final int index;
+    private final boolean processed;
+    private final String message;
+
+    private QazkomFailureResult(final int index, final boolean processed, final String message) {
+	this.index = index;
+	this.processed = processed;
+	this.message = message;
+    }
+
+    public int getIndex() {
+	return index;
+    }
+
+    public boolean isProcessed() {
+	return processed;
+    }
+
+    // the bank's error message when processed
+    public String getMessage() {
+	return processed ? message : null;
+    }
+
+    public String getFailureMessage() {
+	return processed ? null : message;
+    }
+
+    @Override
+    public String toString() {
+	return processed //
+		? String.format("QazkomFailureResult[%1$d PROCESSED %2$s]", index, message)
+		: String.format("QazkomFailureResult[%1$d FAILED %2$s]", index, message);
+    }
+}
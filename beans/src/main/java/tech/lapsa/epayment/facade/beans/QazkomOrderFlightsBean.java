@@ -0,0 +1,54 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import tech.lapsa.epayment.domain.QazkomOrder;
+import tech.lapsa.java.commons.function.MyStrings;
+
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class QazkomOrderFlightsBean {
+
+    static final String PROPERTY_ORDER_CREATION_TIMEOUT_MILLIS = "qazkom-order.creation-timeout-millis";
+
+    static final long DEFAULT_ORDER_CREATION_TIMEOUT_MILLIS = 30_000;
+
+    // MODIFIERS
+
+    // the creator runs in the first caller's thread, concurrent callers for the invoice get its result, so it
+    // must commit the order before returning it
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public QazkomOrder createOnce(final String invoiceNumber, final Supplier<QazkomOrder> creator)
+	    throws IllegalArgumentException {
+	MyStrings.requireNonEmpty(invoiceNumber, "invoiceNumber");
+	return creations.execute(invoiceNumber, creator);
+    }
+
+    // READERS
+
+    public int getInFlightCount() {
+	return creations.size();
+    }
+
+    // PRIVATE
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private SingleFlight<String, QazkomOrder> creations;
+
+    @PostConstruct
+    public void init() {
+	creations = new SingleFlight<>(ConfigProperties.longOf(epaymentConfig,
+		PROPERTY_ORDER_CREATION_TIMEOUT_MILLIS, DEFAULT_ORDER_CREATION_TIMEOUT_MILLIS));
+    }
+}
@@ -0,0 +1,44 @@
+package tech.lapsa.epayment.facade.beans;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSDestinationDefinition;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+@JMSDestinationDefinition(name = QazkomPostbackPipelineBean.JNDI_POSTBACK_QUEUE, //
+	interfaceName = "javax.jms.Queue", //
+	destinationName = "EpaymentQazkomPostbacks")
+@MessageDriven(activationConfig = {
+	@ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Queue"),
+	@ActivationConfigProperty(propertyName = "destinationLookup", //
+		propertyValue = QazkomPostbackPipelineBean.JNDI_POSTBACK_QUEUE)
+})
+public class QazkomPostbackListenerBean implements MessageListener {
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private QazkomPostbackPipelineBean postbacks;
+
+    // system failures roll the delivery back so the postback is redelivered
+    @Override
+    public void onMessage(final Message message) {
+	final String postbackXml;
+	try {
+	    postbackXml = message.getBody(String.class);
+	} catch (final JMSException e) {
+	    logger.WARNING.log("Queued postback message is malformed - %1$s", e.getMessage());
+	    return;
+	}
+	if (postbackXml != null)
+	    postbacks.received(postbackXml);
+    }
+}
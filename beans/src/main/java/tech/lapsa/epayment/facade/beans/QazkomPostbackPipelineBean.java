@@ -0,0 +1,252 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.exceptions.IllegalState;
+import tech.lapsa.java.commons.function.MyStrings;
+import tech.lapsa.java.commons.logging.MyLogger;
+import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+
+// parse and verify run concurrently on the listener pool, persist and notify are serialized per order number, the
+// postbacks of one order are not ordered by their arrival as the listeners take them concurrently
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class QazkomPostbackPipelineBean {
+
+    static final String JNDI_POSTBACK_QUEUE = "java:app/epayment/jms/QazkomPostbacks";
+
+    static final String PROPERTY_POSTBACK_MAX_PENDING = "qazkom-postback.max-pending";
+    static final String PROPERTY_POSTBACK_STRIPES = "qazkom-postback.stripes";
+    static final String PROPERTY_POSTBACK_DEPTH_REFRESH_MILLIS = "qazkom-postback.depth-refresh-millis";
+
+    static final int DEFAULT_POSTBACK_MAX_PENDING = 5_000;
+    static final int DEFAULT_POSTBACK_STRIPES = 64;
+    static final long DEFAULT_POSTBACK_DEPTH_REFRESH_MILLIS = 1_000;
+
+    // MODIFIERS
+
+    // only a postback with a valid signature is queued, so a bad document still fails the caller, returns false
+    // when the postback was processed inline because the queue is over its limit
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public boolean enqueue(final String postbackXml) throws IllegalArgumentException, IllegalArgument, IllegalState {
+	MyStrings.requireNonEmpty(postbackXml, "postbackXml");
+	final VerifiedQazkomPayment parsed = verify(postbackXml);
+	if (depth >= maxPending) {
+	    inlined.incrementAndGet();
+	    logger.INFO.log("Postback queue depth is over %1$d, processing inline", maxPending);
+	    if (idempotency.isDuplicate(postbackXml))
+		completed.incrementAndGet();
+	    else
+		persist(postbackXml, parsed);
+	    return false;
+	}
+	postbackNotificator.eventNotify(postbackXml);
+	enqueued.incrementAndGet();
+	return true;
+    }
+
+    // called by the listener for every queued postback, business failures are not worth a redelivery
+    public void received(final String postbackXml) {
+	try {
+	    process(postbackXml);
+	} catch (final IllegalArgument | IllegalState e) {
+	    rejected.incrementAndGet();
+	    logger.WARNING.log("Queued postback rejected - %1$s", e.getMessage());
+	}
+    }
+
+    // READERS
+
+    // postbacks in the queue from all the nodes as last browsed by the refresh timer, counted up to the pending
+    // limit only
+    public long getQueueDepth() {
+	return depth;
+    }
+
+    public int getInFlightCount() {
+	return inFlight.get();
+    }
+
+    public long getEnqueuedCount() {
+	return enqueued.get();
+    }
+
+    public long getInlinedCount() {
+	return inlined.get();
+    }
+
+    public long getCompletedCount() {
+	return completed.get();
+    }
+
+    public long getRejectedCount() {
+	return rejected.get();
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @EJB
+    private EpaymentFacadeBean facade;
+
+    @Resource
+    private ConnectionFactory connectionFactory;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    @EJB
+    private PostbackIdempotencyBean idempotency;
+
+    @Inject
+    private JmsClientFactory jmsFactory;
+
+    @Resource(lookup = JNDI_POSTBACK_QUEUE)
+    private Queue postbackQueue;
+
+    @Resource(lookup = EpaymentFacadeBean.JNDI_CONFIG)
+    private Properties epaymentConfig;
+
+    private JmsEventNotificatorClient<String> postbackNotificator;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong inlined = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private int maxPending;
+    private long depthRefreshMillis;
+    private ReentrantLock[] stripes;
+
+    private volatile long depth;
+    private ScheduledFuture<?> depthRefresh;
+
+    @PostConstruct
+    public void init() {
+	maxPending = ConfigProperties.intOf(epaymentConfig, PROPERTY_POSTBACK_MAX_PENDING,
+		DEFAULT_POSTBACK_MAX_PENDING);
+	depthRefreshMillis = ConfigProperties.longOf(epaymentConfig, PROPERTY_POSTBACK_DEPTH_REFRESH_MILLIS,
+		DEFAULT_POSTBACK_DEPTH_REFRESH_MILLIS);
+	if (depthRefreshMillis <= 0)
+	    throw new EJBException("Postback depth refresh interval must be positive");
+	final int size = ConfigProperties.intOf(epaymentConfig, PROPERTY_POSTBACK_STRIPES, DEFAULT_POSTBACK_STRIPES);
+	if (size <= 0)
+	    throw new EJBException("Postback stripes must be positive");
+	stripes = new ReentrantLock[size];
+	for (int i = 0; i < size; i++)
+	    stripes[i] = new ReentrantLock();
+	postbackNotificator = jmsFactory.createEventNotificator(postbackQueue);
+	// browsed off the request threads, a caller only reads the last count
+	depthRefresh = executor.scheduleWithFixedDelay(this::refreshDepth, 0, depthRefreshMillis,
+		TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+	if (depthRefresh != null)
+	    depthRefresh.cancel(false);
+    }
+
+    private void process(final String postbackXml) throws IllegalArgument, IllegalState {
+	if (idempotency.isDuplicate(postbackXml)) {
+	    completed.incrementAndGet();
+	    return;
+	}
+	persist(postbackXml, verify(postbackXml));
+    }
+
+    private VerifiedQazkomPayment verify(final String postbackXml) throws IllegalArgument {
+	final long started = System.nanoTime();
+	try {
+	    return facade.verifyQazkomPayment(postbackXml);
+	} finally {
+	    metrics.recordLatency("qazkom-postback.parse", System.nanoTime() - started, false);
+	}
+    }
+
+    private void persist(final String postbackXml, final VerifiedQazkomPayment parsed)
+	    throws IllegalArgument, IllegalState {
+	inFlight.incrementAndGet();
+	try {
+	    final ReentrantLock stripe = stripeOf(parsed.getOrderNumber());
+	    long started = System.nanoTime();
+	    stripe.lock();
+	    try {
+		metrics.recordLatency("qazkom-postback.partition-wait", System.nanoTime() - started, false);
+		if (!idempotency.isCompletedOrder(parsed.getOrderNumber())) {
+		    started = System.nanoTime();
+		    boolean failed = true;
+		    try {
+			facade.completeWithQazkomPayment(parsed);
+			failed = false;
+		    } finally {
+			metrics.recordLatency("qazkom-postback.persist", System.nanoTime() - started, failed);
+		    }
+		    idempotency.completed(postbackXml, parsed.getOrderNumber());
+		}
+	    } finally {
+		stripe.unlock();
+	    }
+	    completed.incrementAndGet();
+	} finally {
+	    inFlight.decrementAndGet();
+	}
+    }
+
+    // the last known depth is kept when the queue can't be browsed, so a broker hiccup doesn't turn every postback
+    // inline
+    private void refreshDepth() {
+	try (JMSContext jms = connectionFactory.createContext();
+		QueueBrowser browser = jms.createBrowser(postbackQueue)) {
+	    final Enumeration<?> messages = browser.getEnumeration();
+	    long count = 0;
+	    while (count < maxPending && messages.hasMoreElements()) {
+		messages.nextElement();
+		count++;
+	    }
+	    depth = count;
+	} catch (final JMSException | JMSRuntimeException e) {
+	    logger.WARNING.log("Postback queue can't be browsed - %1$s", e.getMessage());
+	}
+    }
+
+    private ReentrantLock stripeOf(final String orderNumber) {
+	final int hash = orderNumber == null ? 0 : orderNumber.hashCode();
+	return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+    }
+}
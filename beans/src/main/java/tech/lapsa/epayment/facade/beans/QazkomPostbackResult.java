@@ -0,0 +1,70 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.Serializable;
+
+public final class QazkomPostbackResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+	// the payment is completed by this postback
+	ACCEPTED,
+	// the postback or its order was completed before, nothing is changed
+	DUPLICATE,
+	// the document is malformed, not signed by the bank or refers to an unknown order
+	REJECTED,
+	// the order or the invoice can't be paid in its current state
+	CONFLICT;
+    }
+
+    static QazkomPostbackResult accepted(final String orderNumber) {
+	return new QazkomPostbackResult(Status.ACCEPTED, orderNumber, null);
+    }
+
+    static QazkomPostbackResult duplicate(final String orderNumber) {
+	return new QazkomPostbackResult(Status.DUPLICATE, orderNumber, null);
+    }
+
+    static QazkomPostbackResult rejected(final String orderNumber, final String failureMessage) {
+	return new QazkomPostbackResult(Status.REJECTED, orderNumber, failureMessage);
+    }
+
+    static QazkomPostbackResult conflict(final String orderNumber, final String failureMessage) {
+	return new QazkomPostbackResult(Status.CONFLICT, orderNumber, failureMessage);
+    }
+
+    private final Status status;
+    private final String orderNumber;
+    private final String failureMessage;
+
+    private QazkomPostbackResult(final Status status, final String orderNumber, final String failureMessage) {
+	this.status = status;
+	this.orderNumber = orderNumber;
+	this.failureMessage = failureMessage;
+    }
+
+    public Status getStatus() {
+	return status;
+    }
+
+    // a completed payment, by this postback or an earlier one
+    public boolean isCompleted() {
+	return status == Status.ACCEPTED || status == Status.DUPLICATE;
+    }
+
+    // null when the document could not be parsed or a duplicate is recognized by its content
+    public String getOrderNumber() {
+	return orderNumber;
+    }
+
+    public String getFailureMessage() {
+	return failureMessage;
+    }
+
+    @Override
+    public String toString() {
+	return failureMessage == null //
+		? String.format("QazkomPostbackResult[%1$s %2$s]", status, orderNumber)
+		: String.format("QazkomPostbackResult[%1$s %2$s %3$s]", status, orderNumber, failureMessage);
+    }
+}
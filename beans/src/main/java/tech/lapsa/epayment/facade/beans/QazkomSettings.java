@@ -17,7 +17,9 @@ import tech.lapsa.java.commons.security.MyKeyStores;
 import tech.lapsa.java.commons.security.MyKeyStores.StoreType;
 import tech.lapsa.java.commons.security.MyPrivateKeys;
 
-class QazkomSettings {
+// public so the settings bean and the facade can hand a snapshot around, the values and the constructor are
+// package-private
+public final class QazkomSettings {
 
     static final String JNDI_QAZKOM_CONFIG = "epayment/resource/qazkom/Configuration";
 
@@ -0,0 +1,162 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import tech.lapsa.epayment.facade.EpaymentFacade;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class QazkomSettingsBean {
+
+    static final String PROPERTY_RELOAD_INTERVAL_SECONDS = "settings.reload-interval-seconds";
+
+    static final long DEFAULT_RELOAD_INTERVAL_SECONDS = 60;
+
+    // READERS
+
+    public QazkomSettings getSettings() {
+	return current.settings;
+    }
+
+    // MODIFIERS
+
+    public boolean reload() {
+	final Properties config;
+	try {
+	    config = (Properties) new InitialContext().lookup(QazkomSettings.JNDI_QAZKOM_CONFIG);
+	} catch (final NamingException | ClassCastException e) {
+	    logger.WARNING.log("Qazkom settings re-read failed - %1$s", e.getMessage());
+	    return false;
+	}
+
+	final Sources sources = new Sources(config);
+	if (sources.equals(current.sources))
+	    return false;
+
+	final QazkomSettings settings;
+	try {
+	    settings = new QazkomSettings(config);
+	} catch (final RuntimeException e) {
+	    logger.WARNING.log("Qazkom settings changed but can not be loaded, keeping previous - %1$s",
+		    e.getMessage());
+	    return false;
+	}
+	current = new Snapshot(settings, sources);
+	// payment methods rendered with the previous settings
+	paymentMethods.invalidateAll();
+	logger.INFO.log("Qazkom settings reloaded");
+	return true;
+    }
+
+    // PRIVATE
+
+    private final MyLogger logger = MyLogger.newBuilder() //
+	    .withNameOf(EpaymentFacade.class) //
+	    .build();
+
+    @Resource(lookup = QazkomSettings.JNDI_QAZKOM_CONFIG)
+    private Properties qazkomConfig;
+
+    @Resource
+    private TimerService timerService;
+
+    @EJB
+    private PaymentMethodCacheBean paymentMethods;
+
+    private volatile Snapshot current;
+
+    @PostConstruct
+    public void init() {
+	current = new Snapshot(new QazkomSettings(qazkomConfig), new Sources(qazkomConfig));
+
+	final long interval = ConfigProperties.longOf(qazkomConfig, PROPERTY_RELOAD_INTERVAL_SECONDS,
+		DEFAULT_RELOAD_INTERVAL_SECONDS);
+	if (interval > 0) {
+	    final long intervalMillis = TimeUnit.SECONDS.toMillis(interval);
+	    timerService.createIntervalTimer(intervalMillis, intervalMillis, new TimerConfig(null, false));
+	}
+    }
+
+    @Timeout
+    public void onTimeout() {
+	reload();
+    }
+
+    private static final class Snapshot {
+
+	private final QazkomSettings settings;
+	private final Sources sources;
+
+	private Snapshot(final QazkomSettings settings, final Sources sources) {
+	    this.settings = settings;
+	    this.sources = sources;
+	}
+    }
+
+    // configuration properties and modification times of the keystore files they point to
+    private static final class Sources {
+
+	private final Properties config;
+	private final Map<String, Long> modified = new HashMap<>();
+
+	private Sources(final Properties config) {
+	    this.config = new Properties();
+	    this.config.putAll(config);
+	    Stream.of(QazkomSettings.PROPERTY_MERCHANT_KEYSTORE_FILE, //
+		    QazkomSettings.PROPERTY_MERCHANT_CERTSTORE_FILE, //
+		    QazkomSettings.PROPERTY_BANK_CERTSTORE_FILE) //
+		    .map(config::getProperty) //
+		    .filter(Objects::nonNull) //
+		    .forEach(file -> modified.put(file, lastModified(file)));
+	}
+
+	private static long lastModified(final String file) {
+	    try {
+		final Path path = Paths.get(file);
+		return Files.isRegularFile(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+	    } catch (final InvalidPathException | IOException e) {
+		return -1;
+	    }
+	}
+
+	@Override
+	public int hashCode() {
+	    return Objects.hash(config, modified);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+	    if (this == obj)
+		return true;
+	    if (!(obj instanceof Sources))
+		return false;
+	    final Sources other = (Sources) obj;
+	    return config.equals(other.config) && modified.equals(other.modified);
+	}
+    }
+}
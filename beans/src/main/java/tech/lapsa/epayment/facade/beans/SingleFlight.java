@@ -0,0 +1,77 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.ejb.EJBException;
+
+import tech.lapsa.java.commons.function.MyObjects;
+
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    // zero or less waits for as long as the first caller runs
+    SingleFlight(final long timeoutMillis) {
+	this.timeoutMillis = timeoutMillis;
+    }
+
+    // the first caller for the key runs the supplier, concurrent callers wait for its result
+    V execute(final K key, final Supplier<V> supplier) {
+	MyObjects.requireNonNull(key, "key");
+	MyObjects.requireNonNull(supplier, "supplier");
+
+	final CompletableFuture<V> own = new CompletableFuture<>();
+	final CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+	if (running != null)
+	    return await(key, running);
+
+	try {
+	    final V value = supplier.get();
+	    own.complete(value);
+	    return value;
+	} catch (final RuntimeException | Error e) {
+	    own.completeExceptionally(e);
+	    throw e;
+	} finally {
+	    inFlight.remove(key, own);
+	}
+    }
+
+    // callers arriving after this start a new run, callers already waiting still get the running one's result
+    void forget(final K key) {
+	MyObjects.requireNonNull(key, "key");
+	inFlight.remove(key);
+    }
+
+    void forgetAll() {
+	inFlight.clear();
+    }
+
+    int size() {
+	return inFlight.size();
+    }
+
+    private V await(final K key, final CompletableFuture<V> running) {
+	try {
+	    return timeoutMillis <= 0 ? running.get() : running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+	} catch (final ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException)
+		throw (RuntimeException) e.getCause();
+	    if (e.getCause() instanceof Error)
+		throw (Error) e.getCause();
+	    throw new EJBException(e.getMessage());
+	} catch (final TimeoutException e) {
+	    throw new EJBException(String.format("Timed out waiting for in-flight operation '%1$s'", key));
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new EJBException(String.format("Interrupted waiting for in-flight operation '%1$s'", key));
+	}
+    }
+}
@@ -0,0 +1,92 @@
+package tech.lapsa.epayment.facade.beans;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+import tech.lapsa.epayment.dao.BankDAO;
+import tech.lapsa.epayment.dao.BankDAO.BankDAORemote;
+import tech.lapsa.epayment.dao.InvoiceDAO;
+import tech.lapsa.epayment.dao.InvoiceDAO.InvoiceDAORemote;
+import tech.lapsa.epayment.dao.PaymentDAO;
+import tech.lapsa.epayment.dao.PaymentDAO.PaymentDAORemote;
+import tech.lapsa.epayment.dao.QazkomErrorDAO;
+import tech.lapsa.epayment.dao.QazkomErrorDAO.QazkomErrorDAORemote;
+import tech.lapsa.epayment.dao.QazkomOrderDAO;
+import tech.lapsa.epayment.dao.QazkomOrderDAO.QazkomOrderDAORemote;
+import tech.lapsa.epayment.dao.QazkomPaymentDAO;
+import tech.lapsa.epayment.dao.QazkomPaymentDAO.QazkomPaymentDAORemote;
+
+// the remote DAO views, each call timed, resolved once for the beans sharing them
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TimedDAOsBean {
+
+    // READERS
+
+    public InvoiceDAO getInvoiceDAO() {
+	return invoiceDAO;
+    }
+
+    public PaymentDAO getPaymentDAO() {
+	return paymentDAO;
+    }
+
+    public QazkomOrderDAO getQazkomOrderDAO() {
+	return qoDAO;
+    }
+
+    public QazkomPaymentDAO getQazkomPaymentDAO() {
+	return qpDAO;
+    }
+
+    public QazkomErrorDAO getQazkomErrorDAO() {
+	return qeDAO;
+    }
+
+    public BankDAO getBankDAO() {
+	return bankDAO;
+    }
+
+    // PRIVATE
+
+    @EJB
+    private InvoiceDAORemote invoiceDAORemote;
+
+    @EJB
+    private PaymentDAORemote paymentDAORemote;
+
+    @EJB
+    private QazkomOrderDAORemote qoDAORemote;
+
+    @EJB
+    private QazkomPaymentDAORemote qpDAORemote;
+
+    @EJB
+    private QazkomErrorDAORemote qeDAORemote;
+
+    @EJB
+    private BankDAORemote bankDAORemote;
+
+    @EJB
+    private FacadeMetricsBean metrics;
+
+    private InvoiceDAO invoiceDAO;
+    private PaymentDAO paymentDAO;
+    private QazkomOrderDAO qoDAO;
+    private QazkomPaymentDAO qpDAO;
+    private QazkomErrorDAO qeDAO;
+    private BankDAO bankDAO;
+
+    @PostConstruct
+    public void init() {
+	invoiceDAO = metrics.timed(InvoiceDAO.class, invoiceDAORemote, "dao.invoice");
+	paymentDAO = metrics.timed(PaymentDAO.class, paymentDAORemote, "dao.payment");
+	qoDAO = metrics.timed(QazkomOrderDAO.class, qoDAORemote, "dao.qazkom-order");
+	qpDAO = metrics.timed(QazkomPaymentDAO.class, qpDAORemote, "dao.qazkom-payment");
+	qeDAO = metrics.timed(QazkomErrorDAO.class, qeDAORemote, "dao.qazkom-error");
+	bankDAO = metrics.timed(BankDAO.class, bankDAORemote, "dao.bank");
+    }
+}
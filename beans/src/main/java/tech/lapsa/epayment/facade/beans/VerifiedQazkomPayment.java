@@ -0,0 +1,23 @@
+package tech.lapsa.epayment.facade.beans;
+
+import tech.lapsa.epayment.domain.QazkomPayment;
+import tech.lapsa.java.commons.function.MyObjects;
+
+// a postback parsed and signature checked by the facade, package-private so the persist entry point of the facade
+// can't be called from outside the bean package with a payment that wasn't verified
+final class VerifiedQazkomPayment {
+
+    private final QazkomPayment payment;
+
+    VerifiedQazkomPayment(final QazkomPayment payment) throws IllegalArgumentException {
+	this.payment = MyObjects.requireNonNull(payment, "payment");
+    }
+
+    QazkomPayment getPayment() {
+	return payment;
+    }
+
+    String getOrderNumber() {
+	return payment.getOrderNumber();
+    }
+}
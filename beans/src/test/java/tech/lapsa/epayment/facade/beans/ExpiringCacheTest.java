@@ -0,0 +1,172 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+    private static final long TTL = 1_000;
+    private static final long NEGATIVE_TTL = 100;
+
+    private long now = 10_000;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ExpiringCache<String, String> cache(final int maxSize, final long negativeTtl) {
+	return new ExpiringCache<>(maxSize, TTL, negativeTtl, () -> now);
+    }
+
+    private Function<String, String> loader(final String value) {
+	return key -> {
+	    loads.incrementAndGet();
+	    return value;
+	};
+    }
+
+    @Test
+    public void valueIsServedUntilTheTtlPasses() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	assertEquals("v1", cache.get("k", loader("v1")));
+	now += TTL - 1;
+	assertEquals("v1", cache.get("k", loader("v2")));
+	assertEquals(1, loads.get());
+	now += 1;
+	assertEquals("v2", cache.get("k", loader("v2")));
+	assertEquals(2, loads.get());
+	assertEquals(1, cache.getHits());
+	assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void missIsServedUntilTheNegativeTtlPasses() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	assertNull(cache.get("k", loader(null)));
+	now += NEGATIVE_TTL - 1;
+	assertNull(cache.get("k", loader("v")));
+	assertEquals(1, loads.get());
+	now += 1;
+	assertEquals("v", cache.get("k", loader("v")));
+	assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void missIsNotCachedWithoutNegativeTtl() {
+	final ExpiringCache<String, String> cache = cache(10, 0);
+	assertNull(cache.get("k", loader(null)));
+	assertNull(cache.get("k", loader(null)));
+	assertEquals(2, loads.get());
+	assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void valueLoadedAcrossAnInvalidationIsReturnedButNotCached() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	assertEquals("stale", cache.get("k", key -> {
+	    loads.incrementAndGet();
+	    cache.invalidate("k");
+	    return "stale";
+	}));
+	assertEquals("fresh", cache.get("k", loader("fresh")));
+	assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void valueLoadedAcrossAnotherKeysInvalidationIsCached() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	cache.get("k", key -> {
+	    cache.invalidate("other");
+	    return "v";
+	});
+	assertEquals("v", cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	try {
+	    cache.get("k", key -> {
+		throw new IllegalStateException();
+	    });
+	    fail();
+	} catch (final IllegalStateException expected) {
+	}
+	assertEquals("v", cache.get("k", loader("v")));
+	assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void valueLoadedAcrossAnInvalidateAllIsNotCached() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	cache.get("k", key -> {
+	    cache.invalidateAll();
+	    return "stale";
+	});
+	assertNull(cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void invalidateRemovesTheEntry() {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	cache.put("a", "1");
+	cache.put("b", "2");
+	cache.invalidate("a");
+	assertNull(cache.getIfPresent("a"));
+	assertEquals("2", cache.getIfPresent("b"));
+	assertEquals(1, cache.invalidateIf((key, value) -> value.equals("2")));
+	assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedOverTheMaxSize() {
+	final ExpiringCache<String, String> cache = cache(2, NEGATIVE_TTL);
+	cache.put("a", "1");
+	cache.put("b", "2");
+	cache.get("a", loader("x"));
+	cache.put("c", "3");
+	assertEquals("1", cache.getIfPresent("a"));
+	assertNull(cache.getIfPresent("b"));
+	assertEquals("3", cache.getIfPresent("c"));
+	assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+	final ExpiringCache<String, String> cache = cache(10, NEGATIVE_TTL);
+	final CountDownLatch loading = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+	final AtomicReference<String> first = new AtomicReference<>();
+	final AtomicReference<String> second = new AtomicReference<>();
+
+	final Thread leader = new Thread(() -> first.set(cache.get("k", key -> {
+	    loads.incrementAndGet();
+	    loading.countDown();
+	    try {
+		release.await();
+	    } catch (final InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    return "v";
+	})));
+	leader.start();
+	loading.await();
+
+	final Thread waiter = new Thread(() -> second.set(cache.get("k", loader("other"))));
+	waiter.start();
+	while (waiter.getState() != Thread.State.WAITING)
+	    Thread.sleep(1);
+	release.countDown();
+	leader.join();
+	waiter.join();
+
+	assertEquals("v", first.get());
+	assertEquals("v", second.get());
+	assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,201 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+import tech.lapsa.java.commons.logging.MyLogger;
+
+public class OutboxTest {
+
+    private static final long INITIAL_BACKOFF = 20;
+
+    // tasks run by the test only, so every drain is explicit, the scheduled ones once their delay has passed
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<Thread> senders = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Integer> failuresLeft = new HashMap<>();
+
+    private final ManagedScheduledExecutorService executor = (ManagedScheduledExecutorService) Proxy.newProxyInstance(
+	    getClass().getClassLoader(), new Class<?>[] { ManagedScheduledExecutorService.class },
+	    (proxy, method, args) -> {
+		switch (method.getName()) {
+		case "execute":
+		    tasks.add((Runnable) args[0]);
+		    return null;
+		case "schedule":
+		    scheduled.add((Runnable) args[0]);
+		    delays.add(((TimeUnit) args[2]).toMillis((Long) args[1]));
+		    return null;
+		default:
+		    throw new UnsupportedOperationException(method.getName());
+		}
+	    });
+
+    // no transaction, so a message is taken over as soon as it is added
+    private final TransactionSynchronizationRegistry registry = (TransactionSynchronizationRegistry) Proxy
+	    .newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TransactionSynchronizationRegistry.class },
+		    (proxy, method, args) -> null);
+
+    private Outbox<String> outbox(final Outbox.Sender<String> sender, final boolean flushOnAccept,
+	    final int maxPending, final long maxWaitMillis, final int maxAttempts) {
+	return new Outbox<>("test-outbox", registry, executor, message -> message.substring(0, message.indexOf(':')),
+		sender, new Outbox.Limits(10, 1_000, flushOnAccept, maxPending, maxWaitMillis, maxAttempts,
+			INITIAL_BACKOFF, 1_000),
+		new FacadeMetricsBean(), MyLogger.newBuilder().withNameOf(OutboxTest.class).build());
+    }
+
+    private void send(final String message) {
+	final Integer left = failuresLeft.get(message);
+	if (left != null && left > 0) {
+	    failuresLeft.put(message, left - 1);
+	    throw new IllegalStateException("unavailable");
+	}
+	senders.add(Thread.currentThread());
+	sent.add(message);
+    }
+
+    private void sendAll(final List<String> batch) {
+	batch.forEach(this::send);
+    }
+
+    private void runTasks() {
+	while (!tasks.isEmpty())
+	    tasks.remove(0).run();
+    }
+
+    private void runScheduledAfter(final long delayMillis) throws InterruptedException {
+	Thread.sleep(delayMillis + 5);
+	tasks.addAll(scheduled);
+	scheduled.clear();
+	runTasks();
+    }
+
+    private List<String> sentOf(final String key) {
+	return sent.stream() //
+		.filter(message -> message.startsWith(key + ":")) //
+		.collect(Collectors.toList());
+    }
+
+    @Test
+    public void messagesOfOneKeyAreSentInTheOrderAdded() {
+	final Outbox<String> outbox = outbox(this::sendAll, true, 100, 0, 3);
+	Arrays.asList("a:1", "b:1", "a:2", "b:2", "a:3").forEach(outbox::add);
+	runTasks();
+	assertEquals(Arrays.asList("a:1", "a:2", "a:3"), sentOf("a"));
+	assertEquals(Arrays.asList("b:1", "b:2"), sentOf("b"));
+	assertEquals(5, outbox.getPublishedCount());
+	assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void failedMessageIsRetriedWithBackoffAndOnlyItIsCharged() throws Exception {
+	final Outbox<String> outbox = outbox(Outbox.Sender.eachOf(this::send), true, 100, 0, 3);
+	failuresLeft.put("a:2", 2);
+	failuresLeft.put("a:3", 1);
+	Arrays.asList("a:1", "a:2", "a:3").forEach(outbox::add);
+
+	runTasks();
+	assertEquals(Arrays.asList("a:1"), sent);
+	assertEquals(Arrays.asList(INITIAL_BACKOFF), delays);
+	// the other keys are not held back by its backoff
+	outbox.add("b:1");
+	runTasks();
+	assertEquals(Arrays.asList("a:1", "b:1"), sent);
+
+	runScheduledAfter(INITIAL_BACKOFF);
+	assertEquals(Arrays.asList(INITIAL_BACKOFF, INITIAL_BACKOFF * 2), delays);
+	runScheduledAfter(INITIAL_BACKOFF * 2);
+	// a:3 failed once only, had it been charged for the failures of a:2 it would be dropped now
+	assertEquals(Arrays.asList(INITIAL_BACKOFF, INITIAL_BACKOFF * 2, INITIAL_BACKOFF), delays);
+	runScheduledAfter(INITIAL_BACKOFF);
+
+	assertEquals(Arrays.asList("a:1", "a:2", "a:3"), sentOf("a"));
+	assertEquals(3, outbox.getRetriedCount());
+	assertEquals(0, outbox.getDroppedCount());
+	assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void rejectedMessageIsDroppedAndTheOthersAreSent() {
+	final Outbox<String> outbox = outbox(batch -> {
+	    if (batch.contains("a:2"))
+		throw new IllegalArgument("rejected");
+	    sendAll(batch);
+	}, true, 100, 0, 3);
+	Arrays.asList("a:1", "a:2", "a:3", "b:1").forEach(outbox::add);
+	runTasks();
+	assertEquals(Arrays.asList("a:1", "a:3"), sentOf("a"));
+	assertEquals(Arrays.asList("b:1"), sentOf("b"));
+	assertEquals(1, outbox.getDroppedCount());
+	assertEquals(0, outbox.getRetriedCount());
+	assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void producerOverThePendingLimitFailsAfterTheMaxWait() {
+	final Outbox<String> outbox = outbox(this::sendAll, false, 2, 50, 3);
+	outbox.add("a:1");
+	outbox.add("b:1");
+	final long started = System.nanoTime();
+	try {
+	    outbox.add("c:1");
+	    fail();
+	} catch (final IllegalStateException expected) {
+	}
+	assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 50);
+	// nothing is sent by the producer itself
+	assertTrue(sent.isEmpty());
+	assertTrue(tasks.isEmpty());
+	assertEquals(2, outbox.getPendingCount());
+    }
+
+    @Test
+    public void producerOverThePendingLimitWaitsForADrain() throws Exception {
+	final Outbox<String> outbox = outbox(this::sendAll, false, 2, 5_000, 3);
+	outbox.add("a:1");
+	outbox.add("b:1");
+	final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+	final Thread producer = new Thread(() -> {
+	    try {
+		outbox.add("c:1");
+	    } catch (final RuntimeException e) {
+		failure.set(e);
+	    }
+	});
+	producer.start();
+	while (producer.getState() != Thread.State.TIMED_WAITING)
+	    Thread.sleep(1);
+	assertTrue(sent.isEmpty());
+
+	// a drain makes room, the message the producer adds then may go out with the same drain
+	outbox.stop();
+	producer.join();
+
+	assertNull(failure.get());
+	assertEquals(Arrays.asList("a:1", "b:1"), sent.subList(0, 2));
+	assertEquals(3, outbox.getPublishedCount() + outbox.getPendingCount());
+	assertTrue(senders.stream().allMatch(Thread.currentThread()::equals));
+    }
+}
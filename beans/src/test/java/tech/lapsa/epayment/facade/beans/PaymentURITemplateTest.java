@@ -0,0 +1,72 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Currency;
+
+import org.junit.Test;
+
+import com.lapsa.international.localization.LocalizationLanguage;
+
+import tech.lapsa.epayment.domain.Invoice;
+
+public class PaymentURITemplateTest {
+
+    private static final String NUMBER = "123456";
+
+    private static Invoice invoice(final LocalizationLanguage language, final String externalId) throws Exception {
+	return Invoice.builder() //
+		.withNumber(NUMBER) //
+		.withConsumerName("Test Consumer") //
+		.withConsumerEmail("test@example.com") //
+		.withConsumerPreferLanguage(language) //
+		.withCurrency(Currency.getInstance("KZT")) //
+		.withExternalId(externalId) //
+		.withItem("Policy", 1, 15_000d) //
+		.build(number -> true);
+    }
+
+    // the rendering the template replaced
+    private static String replaced(final String pattern, final Invoice invoice) {
+	return pattern //
+		.replace("@INVOICE_ID@", invoice.getNumber()) //
+		.replace("@INVOICE_NUMBER@", invoice.getNumber()) //
+		.replace("@LANG@", invoice.getConsumerPreferLanguage().getTag());
+    }
+
+    @Test
+    public void unknownTokensPassThroughUnchanged() throws Exception {
+	final String pattern = "https://pay.example.com/@LANG@/@UNKNOWN@/invoice/@INVOICE_ID@@?n=@INVOICE_NUMBER@";
+	final Invoice invoice = invoice(LocalizationLanguage.RUSSIAN, "EXT-1");
+	assertEquals(replaced(pattern, invoice), PaymentURITemplate.compile(pattern).render(invoice).toString());
+    }
+
+    @Test
+    public void spaceIsEncodedAsPercent20() throws Exception {
+	final String pattern = "https://pay.example.com/@LANG@/invoice/@INVOICE_NUMBER@";
+	final Invoice invoice = invoice(LocalizationLanguage.RUSSIAN, "EXT 1");
+	assertEquals(replaced(pattern, invoice) + "?ext=EXT%201",
+		PaymentURITemplate.compile(pattern + "?ext=@EXTERNAL_ID@").render(invoice).toString());
+    }
+
+    @Test
+    public void nullFieldRendersAsEmptyString() throws Exception {
+	final String pattern = "https://pay.example.com/@LANG@/invoice/@INVOICE_NUMBER@";
+	final Invoice invoice = invoice(LocalizationLanguage.RUSSIAN, null);
+	assertEquals(replaced(pattern, invoice) + "?ext=",
+		PaymentURITemplate.compile(pattern + "?ext=@EXTERNAL_ID@").render(invoice).toString());
+    }
+
+    @Test
+    public void languagePrefixIsCachedPerLanguage() throws Exception {
+	final String pattern = "https://pay.example.com/@LANG@/invoice/@INVOICE_NUMBER@";
+	final PaymentURITemplate template = PaymentURITemplate.compile(pattern);
+	final Invoice russian = invoice(LocalizationLanguage.RUSSIAN, "EXT-1");
+	final Invoice english = invoice(LocalizationLanguage.ENGLISH, "EXT-1");
+	assertEquals(replaced(pattern, russian), template.render(russian).toString());
+	assertEquals(replaced(pattern, english), template.render(english).toString());
+	// served from the cached prefixes
+	assertEquals(replaced(pattern, russian), template.render(russian).toString());
+	assertEquals(replaced(pattern, english), template.render(english).toString());
+    }
+}
@@ -0,0 +1,122 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import tech.lapsa.epayment.facade.beans.PostbackIdempotencyBean.PostbackHandler;
+import tech.lapsa.java.commons.exceptions.IllegalArgument;
+
+public class PostbackIdempotencyBeanTest {
+
+    private static final String POSTBACK = "<document><order id=\"000001\"/></document>";
+    private static final String ORDER_NUMBER = "000001";
+
+    private PostbackIdempotencyBean idempotency;
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @Before
+    public void init() {
+	idempotency = new PostbackIdempotencyBean();
+	idempotency.init();
+    }
+
+    private PostbackHandler handler(final String orderNumber) {
+	return postbackXml -> {
+	    handled.incrementAndGet();
+	    return orderNumber;
+	};
+    }
+
+    @Test
+    public void completedPostbackIsSkippedByContentHash() throws Exception {
+	idempotency.complete(POSTBACK, handler(ORDER_NUMBER));
+	idempotency.complete(POSTBACK, handler(ORDER_NUMBER));
+	assertEquals(1, handled.get());
+	assertTrue(idempotency.isDuplicate(POSTBACK));
+	assertFalse(idempotency.isDuplicate(POSTBACK + " "));
+	assertEquals(2, idempotency.getDuplicateCount());
+    }
+
+    @Test
+    public void completedOrderIsFoundByOrderNumber() throws Exception {
+	idempotency.completed(POSTBACK, ORDER_NUMBER);
+	assertTrue(idempotency.isCompletedOrder(ORDER_NUMBER));
+	assertFalse(idempotency.isCompletedOrder("000002"));
+	// another document of the same order is not a content duplicate
+	assertFalse(idempotency.isDuplicate(POSTBACK + " "));
+	idempotency.complete(POSTBACK + " ", handler("000002"));
+	assertTrue(idempotency.isCompletedOrder("000002"));
+    }
+
+    @Test
+    public void concurrentIdenticalPostbacksShareOneHandlerRun() throws Exception {
+	final CountDownLatch handling = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+	final AtomicReference<Exception> leaderFailure = new AtomicReference<>();
+	final AtomicReference<Exception> waiterFailure = new AtomicReference<>();
+
+	final Thread leader = new Thread(() -> {
+	    try {
+		idempotency.complete(POSTBACK, postbackXml -> {
+		    handled.incrementAndGet();
+		    handling.countDown();
+		    try {
+			release.await();
+		    } catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		    }
+		    return ORDER_NUMBER;
+		});
+	    } catch (final Exception e) {
+		leaderFailure.set(e);
+	    }
+	});
+	leader.start();
+	handling.await();
+
+	final Thread waiter = new Thread(() -> {
+	    try {
+		idempotency.complete(POSTBACK, handler(ORDER_NUMBER));
+	    } catch (final Exception e) {
+		waiterFailure.set(e);
+	    }
+	});
+	waiter.start();
+	while (waiter.getState() != Thread.State.WAITING && waiter.getState() != Thread.State.TIMED_WAITING)
+	    Thread.sleep(1);
+	release.countDown();
+	leader.join();
+	waiter.join();
+
+	assertNull(leaderFailure.get());
+	assertNull(waiterFailure.get());
+	assertEquals(1, handled.get());
+	assertTrue(idempotency.isCompletedOrder(ORDER_NUMBER));
+    }
+
+    @Test
+    public void rejectionIsNotRemembered() throws Exception {
+	try {
+	    idempotency.complete(POSTBACK, postbackXml -> {
+		handled.incrementAndGet();
+		throw new IllegalArgument("rejected");
+	    });
+	    fail();
+	} catch (final IllegalArgument expected) {
+	}
+	assertFalse(idempotency.isDuplicate(POSTBACK));
+	idempotency.complete(POSTBACK, handler(ORDER_NUMBER));
+	assertEquals(2, handled.get());
+	assertTrue(idempotency.isDuplicate(POSTBACK));
+    }
+}
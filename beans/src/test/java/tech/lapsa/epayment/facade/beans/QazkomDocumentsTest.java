@@ -0,0 +1,66 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class QazkomDocumentsTest {
+
+    private static final String BODY = "<document><bank name=\"Қазкоммерцбанк\"/></document>";
+
+    private static String read(final byte[] bytes, final int maxBytes) {
+	return QazkomDocuments.read(new ByteArrayInputStream(bytes), maxBytes);
+    }
+
+    private static byte[] concat(final byte[] head, final byte[] tail) {
+	final ByteArrayOutputStream out = new ByteArrayOutputStream();
+	out.write(head, 0, head.length);
+	out.write(tail, 0, tail.length);
+	return out.toByteArray();
+    }
+
+    @Test
+    public void undeclaredEncodingIsUtf8() {
+	assertEquals(BODY, read(BODY.getBytes(StandardCharsets.UTF_8), 1024));
+    }
+
+    @Test
+    public void declaredEncodingIsHonoured() {
+	final String xml = "<?xml version=\"1.0\" encoding=\"windows-1251\"?><document>Банк</document>";
+	assertEquals(xml, read(xml.getBytes(Charset.forName("windows-1251")), 1024));
+    }
+
+    @Test
+    public void byteOrderMarkIsHonouredAndDropped() {
+	final byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+	assertEquals(BODY, read(concat(bom, BODY.getBytes(StandardCharsets.UTF_8)), 1024));
+	final byte[] bomLE = { (byte) 0xFF, (byte) 0xFE };
+	assertEquals(BODY, read(concat(bomLE, BODY.getBytes(StandardCharsets.UTF_16LE)), 1024));
+    }
+
+    @Test
+    public void documentOverTheLimitIsRejected() {
+	final byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+	assertEquals(BODY, read(bytes, bytes.length));
+	try {
+	    read(bytes, bytes.length - 1);
+	    fail();
+	} catch (final IllegalArgumentException expected) {
+	}
+    }
+
+    @Test
+    public void emptyDocumentIsRejected() {
+	try {
+	    read(new byte[0], 1024);
+	    fail();
+	} catch (final IllegalArgumentException expected) {
+	}
+    }
+}
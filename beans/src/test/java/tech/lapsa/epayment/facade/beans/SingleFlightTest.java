@@ -0,0 +1,114 @@
+package tech.lapsa.epayment.facade.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ejb.EJBException;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void sequentialCallsRunEachTime() {
+	final SingleFlight<String, Integer> flights = new SingleFlight<>(0);
+	final AtomicInteger runs = new AtomicInteger();
+	assertEquals(Integer.valueOf(1), flights.execute("k", runs::incrementAndGet));
+	assertEquals(Integer.valueOf(2), flights.execute("k", runs::incrementAndGet));
+	assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void waiterGetsTheFailureOfTheRunningCall() throws Exception {
+	final SingleFlight<String, String> flights = new SingleFlight<>(0);
+	final IllegalStateException failure = new IllegalStateException("failed");
+	final CountDownLatch running = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+	final AtomicReference<Throwable> waiterFailure = new AtomicReference<>();
+
+	final Thread leader = new Thread(() -> {
+	    try {
+		flights.execute("k", () -> {
+		    running.countDown();
+		    await(release);
+		    throw failure;
+		});
+	    } catch (final IllegalStateException expected) {
+	    }
+	});
+	leader.start();
+	running.await();
+
+	final Thread waiter = new Thread(() -> {
+	    try {
+		flights.execute("k", () -> "not run");
+	    } catch (final RuntimeException e) {
+		waiterFailure.set(e);
+	    }
+	});
+	waiter.start();
+	while (waiter.getState() != Thread.State.WAITING)
+	    Thread.sleep(1);
+	release.countDown();
+	leader.join();
+	waiter.join();
+
+	assertSame(failure, waiterFailure.get());
+    }
+
+    @Test
+    public void waiterTimesOut() throws Exception {
+	final SingleFlight<String, String> flights = new SingleFlight<>(10);
+	final CountDownLatch running = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+
+	final Thread leader = new Thread(() -> flights.execute("k", () -> {
+	    running.countDown();
+	    await(release);
+	    return "v";
+	}));
+	leader.start();
+	running.await();
+	try {
+	    flights.execute("k", () -> "not run");
+	    fail("EJBException expected");
+	} catch (final EJBException expected) {
+	} finally {
+	    release.countDown();
+	    leader.join();
+	}
+    }
+
+    @Test
+    public void forgottenKeyStartsANewRun() throws Exception {
+	final SingleFlight<String, String> flights = new SingleFlight<>(0);
+	final CountDownLatch running = new CountDownLatch(1);
+	final CountDownLatch release = new CountDownLatch(1);
+
+	final Thread leader = new Thread(() -> flights.execute("k", () -> {
+	    running.countDown();
+	    await(release);
+	    return "old";
+	}));
+	leader.start();
+	running.await();
+	flights.forget("k");
+	assertEquals("new", flights.execute("k", () -> "new"));
+	release.countDown();
+	leader.join();
+	assertEquals(0, flights.size());
+    }
+
+    private static void await(final CountDownLatch latch) {
+	try {
+	    latch.await();
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+}
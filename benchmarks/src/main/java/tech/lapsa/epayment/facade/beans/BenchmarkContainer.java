@@ -0,0 +1,124 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+
+// a minimal stand-in for the EJB container: field injection by type or resource name and @PostConstruct
+final class BenchmarkContainer {
+
+    private final Map<Class<?>, Object> components = new HashMap<>();
+    private final Map<String, Object> resources = new HashMap<>();
+
+    <T> BenchmarkContainer register(final Class<T> type, final T instance) {
+	components.put(type, instance);
+	return this;
+    }
+
+    BenchmarkContainer resource(final String name, final Object value) {
+	resources.put(name, value);
+	return this;
+    }
+
+    Object lookup(final String name) {
+	return resources.get(name);
+    }
+
+    synchronized <T> T bean(final Class<T> beanClass) {
+	final Object existing = components.get(beanClass);
+	if (existing != null)
+	    return beanClass.cast(existing);
+	try {
+	    final T bean = beanClass.getDeclaredConstructor().newInstance();
+	    components.put(beanClass, bean);
+	    wire(bean);
+	    postConstruct(bean);
+	    return bean;
+	} catch (final ReflectiveOperationException e) {
+	    throw new IllegalStateException("Can't create bean " + beanClass.getName(), e);
+	}
+    }
+
+    static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+	return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+		(proxy, method, args) -> {
+		    if (method.getDeclaringClass() == Object.class)
+			switch (method.getName()) {
+			case "hashCode":
+			    return System.identityHashCode(proxy);
+			case "equals":
+			    return proxy == args[0];
+			case "toString":
+			    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+			default:
+			    throw new UnsupportedOperationException(method.getName());
+			}
+		    return handler.invoke(proxy, method, args);
+		}));
+    }
+
+    static <T> T delegating(final Class<T> type, final Object delegate) {
+	return proxy(type, (proxy, method, args) -> {
+	    try {
+		return method.invoke(delegate, args);
+	    } catch (final InvocationTargetException e) {
+		throw e.getCause();
+	    }
+	});
+    }
+
+    // PRIVATE
+
+    private void wire(final Object bean) throws IllegalAccessException {
+	for (Class<?> c = bean.getClass(); c != Object.class; c = c.getSuperclass())
+	    for (final Field field : c.getDeclaredFields()) {
+		if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+		    continue;
+		final Object value = resolve(field);
+		if (value == null)
+		    continue;
+		field.setAccessible(true);
+		field.set(bean, value);
+	    }
+    }
+
+    private Object resolve(final Field field) {
+	final Resource resource = field.getAnnotation(Resource.class);
+	if (resource != null) {
+	    if (!resource.lookup().isEmpty() && resources.containsKey(resource.lookup()))
+		return resources.get(resource.lookup());
+	    if (!resource.name().isEmpty() && resources.containsKey(resource.name()))
+		return resources.get(resource.name());
+	}
+	final Class<?> type = field.getType();
+	for (final Map.Entry<Class<?>, Object> e : components.entrySet())
+	    if (type.isAssignableFrom(e.getKey()))
+		return e.getValue();
+	if (type.isAnnotationPresent(Singleton.class) || type.isAnnotationPresent(Stateless.class))
+	    return bean(type);
+	return null;
+    }
+
+    private static void postConstruct(final Object bean) throws ReflectiveOperationException {
+	for (final Method method : bean.getClass().getDeclaredMethods())
+	    if (method.isAnnotationPresent(PostConstruct.class)) {
+		method.setAccessible(true);
+		try {
+		    method.invoke(bean);
+		} catch (final InvocationTargetException e) {
+		    throw new IllegalStateException("@PostConstruct failed for " + bean.getClass().getName(),
+			    e.getCause());
+		}
+	    }
+    }
+}
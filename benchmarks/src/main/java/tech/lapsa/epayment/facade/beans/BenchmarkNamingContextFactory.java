@@ -0,0 +1,38 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Hashtable;
+import java.util.function.Function;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.spi.InitialContextFactory;
+
+// answers InitialContext lookups from the resources of the container bound last, public as javax.naming
+// instantiates it
+public final class BenchmarkNamingContextFactory implements InitialContextFactory {
+
+    private static volatile Function<String, Object> resources = name -> null;
+
+    static void bind(final Function<String, Object> resources) {
+	BenchmarkNamingContextFactory.resources = resources;
+	System.setProperty(Context.INITIAL_CONTEXT_FACTORY, BenchmarkNamingContextFactory.class.getName());
+    }
+
+    @Override
+    public Context getInitialContext(final Hashtable<?, ?> environment) {
+	final Function<String, Object> bound = resources;
+	return BenchmarkContainer.proxy(Context.class, (proxy, method, args) -> {
+	    switch (method.getName()) {
+	    case "lookup":
+		final Object value = bound.apply(String.valueOf(args[0]));
+		if (value == null)
+		    throw new NameNotFoundException(String.valueOf(args[0]));
+		return value;
+	    case "close":
+		return null;
+	    default:
+		throw new UnsupportedOperationException(method.toString());
+	    }
+	});
+    }
+}
@@ -0,0 +1,23 @@
+package tech.lapsa.epayment.facade.beans;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// java -jar benchmarks/target/benchmarks.jar [JMH options] - allocation rate is always reported
+public final class BenchmarksRunner {
+
+    private BenchmarksRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+	new Runner(new OptionsBuilder() //
+		.parent(new CommandLineOptions(args)) //
+		.addProfiler(GCProfiler.class) //
+		.build()) //
+			.run();
+    }
+}
@@ -0,0 +1,55 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.net.URI;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DefaultPaymentURIBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean byValue;
+
+    @Param({ "false", "true" })
+    public boolean invoiceCache;
+
+    private FacadeFixture fixture;
+    private String invoiceNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	final Properties epaymentOverrides = new Properties();
+	epaymentOverrides.setProperty(InvoiceCacheBean.PROPERTY_INVOICE_CACHE_ENABLED, String.valueOf(invoiceCache));
+	fixture = new FacadeFixture(byValue, new Properties(), epaymentOverrides);
+	invoiceNumber = fixture.newInvoice().getNumber();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	fixture.close();
+    }
+
+    @Benchmark
+    public URI getDefaultPaymentURI() throws Exception {
+	return fixture.facade.getDefaultPaymentURI(invoiceNumber);
+    }
+}
@@ -0,0 +1,263 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ejb.SessionContext;
+import javax.ejb.TimerService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSContext;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Topic;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import com.lapsa.international.localization.LocalizationLanguage;
+
+import tech.lapsa.epayment.dao.BankDAO.BankDAORemote;
+import tech.lapsa.epayment.dao.InvoiceDAO.InvoiceDAORemote;
+import tech.lapsa.epayment.dao.PaymentDAO.PaymentDAORemote;
+import tech.lapsa.epayment.dao.QazkomErrorDAO.QazkomErrorDAORemote;
+import tech.lapsa.epayment.dao.QazkomOrderDAO.QazkomOrderDAORemote;
+import tech.lapsa.epayment.dao.QazkomPaymentDAO.QazkomPaymentDAORemote;
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.Invoice.InvoiceBuilder;
+import tech.lapsa.epayment.domain.NonUniqueNumberException;
+import tech.lapsa.epayment.domain.NumberOfAttemptsExceedException;
+import tech.lapsa.epayment.domain.QazkomOrder;
+import tech.lapsa.epayment.shared.jms.EpaymentDestinations;
+import tech.lapsa.lapsa.jmsRPC.client.JmsClientFactory;
+import tech.lapsa.lapsa.jmsRPC.client.JmsEventNotificatorClient;
+
+// EpaymentFacadeBean wired to in-memory DAOs and JMS stand-ins
+final class FacadeFixture implements AutoCloseable {
+
+    static final URI POSTBACK_URI = URI.create("https://epayment.example.com/qazkom/postback");
+    static final URI FAILURE_URI = URI.create("https://epayment.example.com/qazkom/failure");
+    static final URI RETURN_URI = URI.create("https://epayment.example.com/invoice/return");
+
+    static final String KEYSTORE_PASSWORD = "benchmark";
+    static final String KEYSTORE_ALIAS = "merchant";
+
+    final InMemoryDAOs daos;
+    final BenchmarkContainer container;
+    final EpaymentFacadeBean facade;
+
+    final AtomicLong jmsMessages = new AtomicLong();
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+    private static File keystore;
+
+    FacadeFixture(final boolean byValue) {
+	this(byValue, new Properties());
+    }
+
+    FacadeFixture(final boolean byValue, final Properties qazkomOverrides) {
+	this(byValue, qazkomOverrides, new Properties());
+    }
+
+    FacadeFixture(final boolean byValue, final Properties qazkomOverrides, final Properties epaymentOverrides) {
+	daos = new InMemoryDAOs(byValue);
+
+	final Properties epaymentConfig = epaymentConfig();
+	epaymentConfig.putAll(epaymentOverrides);
+
+	final Properties qazkomConfig = qazkomConfig();
+	qazkomConfig.putAll(qazkomOverrides);
+
+	container = new BenchmarkContainer() //
+		.register(InvoiceDAORemote.class, daos.invoiceDAO()) //
+		.register(QazkomOrderDAORemote.class, daos.qazkomOrderDAO()) //
+		.register(QazkomPaymentDAORemote.class, daos.qazkomPaymentDAO()) //
+		.register(QazkomErrorDAORemote.class, daos.qazkomErrorDAO()) //
+		.register(PaymentDAORemote.class, daos.paymentDAO()) //
+		.register(BankDAORemote.class, daos.bankDAO()) //
+		.register(JmsEventNotificatorClient.class, notificator()) //
+		.register(JmsClientFactory.class, BenchmarkContainer.proxy(JmsClientFactory.class,
+			(proxy, method, args) -> notificator())) //
+		.register(TransactionSynchronizationRegistry.class,
+			BenchmarkContainer.proxy(TransactionSynchronizationRegistry.class,
+				(proxy, method, args) -> null)) //
+		.register(TimerService.class, BenchmarkContainer.proxy(TimerService.class,
+			(proxy, method, args) -> null)) //
+		.register(ManagedScheduledExecutorService.class,
+			BenchmarkContainer.delegating(ManagedScheduledExecutorService.class, executor)) //
+		.register(ConnectionFactory.class, BenchmarkContainer.proxy(ConnectionFactory.class,
+			(proxy, method, args) -> emptyQueueContext())) //
+		.resource(EpaymentFacadeBean.JNDI_CONFIG, epaymentConfig) //
+		.resource(QazkomSettings.JNDI_QAZKOM_CONFIG, qazkomConfig) //
+		.resource(EpaymentDestinations.NOTIFIER_PAYMENTLINK_REQUESTER_EMAIL, destination()) //
+		.resource(EpaymentDestinations.NOTIFIER_PAYMENTSUCCESS_REQUESTER_EMAIL, destination()) //
+		.resource(InvoiceCacheBean.JNDI_INVALIDATION_TOPIC,
+			BenchmarkContainer.proxy(Topic.class, (proxy, method, args) -> null)) //
+		.resource(QazkomPostbackPipelineBean.JNDI_POSTBACK_QUEUE,
+			BenchmarkContainer.proxy(Queue.class, (proxy, method, args) -> null));
+	BenchmarkNamingContextFactory.bind(container::lookup);
+	container.register(SessionContext.class, BenchmarkContainer.proxy(SessionContext.class,
+		(proxy, method, args) -> {
+		    if ("getBusinessObject".equals(method.getName()))
+			return container.bean((Class<?>) args[0]);
+		    throw new UnsupportedOperationException(method.toString());
+		}));
+
+	facade = container.bean(EpaymentFacadeBean.class);
+    }
+
+    InvoiceBuilder newInvoiceBuilder() {
+	return newInvoiceBuilder(15_000d);
+    }
+
+    InvoiceBuilder newInvoiceBuilder(final double amount) {
+	return Invoice.builder() //
+		.withGeneratedNumber() //
+		.withConsumerName("Benchmark Consumer") //
+		.withConsumerEmail("benchmark@example.com") //
+		.withConsumerPreferLanguage(LocalizationLanguage.RUSSIAN) //
+		.withCurrency(Currency.getInstance("KZT")) //
+		.withExternalId("BENCH-1") //
+		.withItem("Policy", 1, amount);
+    }
+
+    Invoice newInvoice() {
+	try {
+	    final Invoice invoice = newInvoiceBuilder().build(number -> !daos.invoices.containsKey(number));
+	    daos.putInvoice(invoice);
+	    return invoice;
+	} catch (NumberOfAttemptsExceedException | NonUniqueNumberException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    QazkomOrder newOrder(final Invoice invoice) {
+	return newOrder(invoice, null);
+    }
+
+    QazkomOrder newOrder(final Invoice invoice, final String number) {
+	final QazkomSettings settings = container.bean(QazkomSettingsBean.class).getSettings();
+	final QazkomOrder.QazkomOrderBuilder builder = QazkomOrder.builder().forInvoice(invoice);
+	if (number == null)
+	    builder.withGeneratedNumber();
+	else
+	    builder.withNumber(number);
+	try {
+	    final QazkomOrder order = builder //
+		    .withMerchant(settings.QAZKOM_MERCHANT_ID, //
+			    settings.QAZKOM_MERCHANT_NAME, //
+			    settings.QAZKOM_MERCHANT_CERTIFICATE, //
+			    settings.QAZKOM_MERCHANT_key) //
+		    .build(n -> !daos.orders.containsKey(n));
+	    daos.putOrder(order);
+	    return order;
+	} catch (NumberOfAttemptsExceedException | NonUniqueNumberException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    @Override
+    public void close() {
+	executor.shutdown();
+	try {
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    // PRIVATE
+
+    @SuppressWarnings("unchecked")
+    private <E extends java.io.Serializable> JmsEventNotificatorClient<E> notificator() {
+	return BenchmarkContainer.proxy(JmsEventNotificatorClient.class, (proxy, method, args) -> {
+	    jmsMessages.incrementAndGet();
+	    return null;
+	});
+    }
+
+    private static Destination destination() {
+	return BenchmarkContainer.proxy(Destination.class, (proxy, method, args) -> null);
+    }
+
+    // the postback queue browses as empty, so postbacks are always queued
+    private static JMSContext emptyQueueContext() {
+	final QueueBrowser browser = BenchmarkContainer.proxy(QueueBrowser.class,
+		(proxy, method, args) -> "getEnumeration".equals(method.getName())
+			? Collections.emptyEnumeration()
+			: null);
+	return BenchmarkContainer.proxy(JMSContext.class,
+		(proxy, method, args) -> "createBrowser".equals(method.getName()) ? browser : null);
+    }
+
+    private static Properties epaymentConfig() {
+	final Properties config = new Properties();
+	config.setProperty(EpaymentFacadeBean.PROPERTY_DEFAULT_PAYMENT_URI_PATTERN,
+		"https://epayment.example.com/@LANG@/invoice/@INVOICE_NUMBER@");
+	return config;
+    }
+
+    static Properties qazkomConfig() {
+	final String keystore = keystore().getAbsolutePath();
+	final Properties config = new Properties();
+	config.setProperty(QazkomSettings.PROPERTY_BANK_EPAY_URL, "https://testpay.kkb.kz/jsp/process/logon.jsp");
+	config.setProperty(QazkomSettings.PROPERTY_BANK_EPAY_TEMPLATE, "default.xsl");
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_ID, "92061101");
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_NAME, "Benchmark Merchant");
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_KEYSTORE_FILE, keystore);
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_KEYSTORE_TYPE, "JKS");
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_KEYSTORE_PASSWORD, KEYSTORE_PASSWORD);
+	config.setProperty(QazkomSettings.PROPERTY_MERCHANT_KEYSTORE_KEYALIAS, KEYSTORE_ALIAS);
+	config.setProperty(QazkomSettings.PROPERTY_BANK_CERTSTORE_FILE, keystore);
+	config.setProperty(QazkomSettings.PROPERTY_BANK_CERTSTORE_TYPE, "JKS");
+	config.setProperty(QazkomSettings.PROPERTY_BANK_CERTSTORE_PASSWORD, KEYSTORE_PASSWORD);
+	config.setProperty(QazkomSettings.PROPERTY_BANK_CERTSTORE_CERTALIAS, KEYSTORE_ALIAS);
+	config.setProperty(QazkomSettingsBean.PROPERTY_RELOAD_INTERVAL_SECONDS, "0");
+	return config;
+    }
+
+    // a throwaway self-signed merchant key, also used as the bank certificate
+    static synchronized File keystore() {
+	if (keystore != null)
+	    return keystore;
+	try {
+	    final File dir = Files.createTempDirectory("epayment-benchmarks").toFile();
+	    final File file = new File(dir, "merchant.jks");
+	    final String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator
+		    + "keytool";
+	    final Process process = new ProcessBuilder(keytool, "-genkeypair", //
+		    "-alias", KEYSTORE_ALIAS, //
+		    "-keyalg", "RSA", //
+		    "-keysize", "2048", //
+		    "-sigalg", "SHA1withRSA", //
+		    "-dname", "CN=Benchmark Merchant", //
+		    "-validity", "365", //
+		    "-storetype", "JKS", //
+		    "-keystore", file.getAbsolutePath(), //
+		    "-storepass", KEYSTORE_PASSWORD, //
+		    "-keypass", KEYSTORE_PASSWORD) //
+			    .inheritIO() //
+			    .start();
+	    if (process.waitFor() != 0)
+		throw new IllegalStateException("keytool failed with exit code " + process.exitValue());
+	    file.deleteOnExit();
+	    dir.deleteOnExit();
+	    keystore = file;
+	    return keystore;
+	} catch (final IOException e) {
+	    throw new IllegalStateException("Can't generate benchmark keystore", e);
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IllegalStateException("Interrupted while generating benchmark keystore", e);
+	}
+    }
+}
@@ -0,0 +1,164 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tech.lapsa.epayment.dao.BankDAO.BankDAORemote;
+import tech.lapsa.epayment.dao.InvoiceDAO.InvoiceDAORemote;
+import tech.lapsa.epayment.dao.PaymentDAO.PaymentDAORemote;
+import tech.lapsa.epayment.dao.QazkomErrorDAO.QazkomErrorDAORemote;
+import tech.lapsa.epayment.dao.QazkomOrderDAO.QazkomOrderDAORemote;
+import tech.lapsa.epayment.dao.QazkomPaymentDAO.QazkomPaymentDAORemote;
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.QazkomOrder;
+import tech.lapsa.epayment.domain.QazkomPayment;
+import tech.lapsa.patterns.dao.NotFound;
+
+// in-memory stand-ins for the remote DAO views, optionally passing entities by value like a remote call does
+final class InMemoryDAOs {
+
+    final Map<String, Invoice> invoices = new ConcurrentHashMap<>();
+    final Map<String, QazkomOrder> orders = new ConcurrentHashMap<>();
+    final Map<String, QazkomOrder> latestOrders = new ConcurrentHashMap<>();
+    final Map<String, QazkomPayment> payments = new ConcurrentHashMap<>();
+
+    final AtomicLong calls = new AtomicLong();
+
+    private final boolean byValue;
+
+    InMemoryDAOs(final boolean byValue) {
+	this.byValue = byValue;
+    }
+
+    void clear() {
+	invoices.clear();
+	orders.clear();
+	latestOrders.clear();
+	payments.clear();
+    }
+
+    void putInvoice(final Invoice invoice) {
+	invoices.put(invoice.getNumber(), copy(invoice));
+    }
+
+    void putOrder(final QazkomOrder order) {
+	final QazkomOrder stored = copy(order);
+	orders.put(order.getNumber(), stored);
+	latestOrders.put(order.getForInvoice().getNumber(), stored);
+    }
+
+    InvoiceDAORemote invoiceDAO() {
+	return BenchmarkContainer.proxy(InvoiceDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    switch (method.getName()) {
+	    case "save":
+		final Invoice invoice = (Invoice) args[0];
+		putInvoice(invoice);
+		return copy(invoice);
+	    case "getByNumber":
+		return copy(found(invoices.get(args[0])));
+	    default:
+		throw new UnsupportedOperationException(method.toString());
+	    }
+	});
+    }
+
+    QazkomOrderDAORemote qazkomOrderDAO() {
+	return BenchmarkContainer.proxy(QazkomOrderDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    switch (method.getName()) {
+	    case "save":
+		final QazkomOrder order = (QazkomOrder) args[0];
+		putOrder(order);
+		return copy(order);
+	    case "getByNumber":
+		return copy(found(orders.get(args[0])));
+	    case "getLatestForInvoice":
+		return copy(found(latestOrders.get(((Invoice) args[0]).getNumber())));
+	    case "isValidUniqueNumber":
+		return !orders.containsKey(args[0]) && !invoices.containsKey(args[0]);
+	    default:
+		throw new UnsupportedOperationException(method.toString());
+	    }
+	});
+    }
+
+    QazkomPaymentDAORemote qazkomPaymentDAO() {
+	return BenchmarkContainer.proxy(QazkomPaymentDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    switch (method.getName()) {
+	    case "save":
+		final QazkomPayment payment = (QazkomPayment) args[0];
+		payments.put(payment.getOrderNumber(), copy(payment));
+		return copy(payment);
+	    case "isUniqueNumber":
+		return !payments.containsKey(args[0]);
+	    default:
+		throw new UnsupportedOperationException(method.toString());
+	    }
+	});
+    }
+
+    QazkomErrorDAORemote qazkomErrorDAO() {
+	return BenchmarkContainer.proxy(QazkomErrorDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    if ("save".equals(method.getName()))
+		return copy(args[0]);
+	    throw new UnsupportedOperationException(method.toString());
+	});
+    }
+
+    PaymentDAORemote paymentDAO() {
+	return BenchmarkContainer.proxy(PaymentDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    if ("save".equals(method.getName()))
+		return copy(args[0]);
+	    throw new UnsupportedOperationException(method.toString());
+	});
+    }
+
+    BankDAORemote bankDAO() {
+	return BenchmarkContainer.proxy(BankDAORemote.class, (proxy, method, args) -> {
+	    calls.incrementAndGet();
+	    if ("getByBIN".equals(method.getName()))
+		throw new NotFound();
+	    throw new UnsupportedOperationException(method.toString());
+	});
+    }
+
+    // PRIVATE
+
+    private static <T> T found(final T value) throws NotFound {
+	if (value == null)
+	    throw new NotFound();
+	return value;
+    }
+
+    <T> T copy(final T value) {
+	return byValue ? deepCopy(value) : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T deepCopy(final T value) {
+	if (value == null)
+	    return null;
+	try {
+	    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+		out.writeObject((Serializable) value);
+	    }
+	    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+		return (T) in.readObject();
+	    }
+	} catch (final IOException | ClassNotFoundException e) {
+	    throw new IllegalStateException("By-value copy failed", e);
+	}
+    }
+}
@@ -0,0 +1,53 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.lapsa.epayment.domain.Invoice;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class InvoiceAcceptBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean byValue;
+
+    private FacadeFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	fixture = new FacadeFixture(byValue);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+	fixture.daos.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	fixture.close();
+    }
+
+    @Benchmark
+    public Invoice invoiceAccept() throws Exception {
+	return fixture.facade.invoiceAccept(fixture.newInvoiceBuilder());
+    }
+}
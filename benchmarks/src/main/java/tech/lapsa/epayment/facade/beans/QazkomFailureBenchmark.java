@@ -0,0 +1,77 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.QazkomOrder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class QazkomFailureBenchmark {
+
+    private static final String FAILURE_XML_FORMAT = "<response order_id=\"%1$s\">"
+	    + "<error type=\"system\" time=\"2018-01-01 12:00:00\" code=\"00\">Card is expired</error>"
+	    + "<session id=\"1234567890\"/>"
+	    + "</response>";
+
+    @Param({ "false", "true" })
+    public boolean byValue;
+
+    private static final int BATCH_SIZE = 100;
+
+    private FacadeFixture fixture;
+    private String failureXml;
+    private List<String> failureXmls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	fixture = new FacadeFixture(byValue);
+    }
+
+    // errors accumulate on the order, so every iteration starts with a fresh one
+    @Setup(Level.Iteration)
+    public void newOrder() {
+	fixture.daos.clear();
+	final Invoice invoice = fixture.newInvoice();
+	final QazkomOrder order = fixture.newOrder(invoice);
+	failureXml = String.format(FAILURE_XML_FORMAT, order.getNumber());
+	failureXmls = Collections.nCopies(BATCH_SIZE, failureXml);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	fixture.close();
+    }
+
+    @Benchmark
+    public String processQazkomFailure() throws Exception {
+	return fixture.facade.processQazkomFailure(failureXml);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<QazkomFailureResult> processQazkomFailures() throws Exception {
+	return fixture.facade.processQazkomFailures(failureXmls);
+    }
+}
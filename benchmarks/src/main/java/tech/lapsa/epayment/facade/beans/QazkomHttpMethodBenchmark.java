@@ -0,0 +1,63 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.QazkomOrder;
+import tech.lapsa.epayment.facade.PaymentMethod;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class QazkomHttpMethodBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean byValue;
+
+    // false measures the page render of an uncached payment method
+    @Param({ "false", "true" })
+    public boolean cached;
+
+    private FacadeFixture fixture;
+    private String invoiceNumber;
+    private String orderNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	fixture = new FacadeFixture(byValue);
+	final Invoice invoice = fixture.newInvoice();
+	final QazkomOrder order = fixture.newOrder(invoice);
+	invoiceNumber = invoice.getNumber();
+	orderNumber = order.getNumber();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	fixture.close();
+    }
+
+    @Benchmark
+    public PaymentMethod qazkomHttpMethod() throws Exception {
+	if (!cached)
+	    fixture.container.bean(PaymentMethodCacheBean.class).invalidateOrder(orderNumber);
+	return fixture.facade.qazkomHttpMethod(FacadeFixture.POSTBACK_URI, FacadeFixture.FAILURE_URI,
+		FacadeFixture.RETURN_URI, invoiceNumber);
+    }
+}
@@ -0,0 +1,115 @@
+package tech.lapsa.epayment.facade.beans;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.lapsa.epayment.domain.Invoice;
+import tech.lapsa.epayment.domain.NonUniqueNumberException;
+import tech.lapsa.epayment.domain.NumberOfAttemptsExceedException;
+import tech.lapsa.epayment.domain.QazkomOrder;
+
+// Postbacks are signed by the bank, so this benchmark replays a captured one:
+// -Dbenchmark.qazkom.postback=<postback xml file>
+// -Dbenchmark.qazkom.bank-config=<properties file with the bank.cert.* entries that verify it>
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class QazkomPostbackBenchmark {
+
+    static final String PROPERTY_POSTBACK_FILE = "benchmark.qazkom.postback";
+    static final String PROPERTY_BANK_CONFIG_FILE = "benchmark.qazkom.bank-config";
+
+    private static final Pattern ORDER_ID = Pattern.compile("order_id=\"([^\"]+)\"");
+    private static final Pattern AMOUNT = Pattern.compile("amount=\"([^\"]+)\"");
+
+    @Param({ "false", "true" })
+    public boolean byValue;
+
+    private FacadeFixture fixture;
+    private String postbackXml;
+    private Invoice invoice;
+    private QazkomOrder order;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, NumberOfAttemptsExceedException, NonUniqueNumberException {
+	postbackXml = new String(Files.readAllBytes(Paths.get(required(PROPERTY_POSTBACK_FILE))),
+		StandardCharsets.UTF_8);
+
+	final Properties bankConfig = new Properties();
+	try (InputStream is = Files.newInputStream(Paths.get(required(PROPERTY_BANK_CONFIG_FILE)))) {
+	    bankConfig.load(is);
+	}
+	fixture = new FacadeFixture(byValue, bankConfig);
+
+	invoice = fixture.newInvoiceBuilder(Double.parseDouble(attribute(AMOUNT))) //
+		.build(number -> true);
+	order = fixture.newOrder(invoice, attribute(ORDER_ID));
+    }
+
+    // a postback is accepted once per order, so every invocation starts from the unpaid order and a clean
+    // idempotency window
+    @Setup(Level.Invocation)
+    public void reset() {
+	fixture.daos.clear();
+	fixture.daos.putInvoice(InMemoryDAOs.deepCopy(invoice));
+	fixture.daos.putOrder(InMemoryDAOs.deepCopy(order));
+	fixture.container.bean(PostbackIdempotencyBean.class).invalidateAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	fixture.close();
+    }
+
+    @Benchmark
+    public void completeWithQazkomPayment() throws Exception {
+	fixture.facade.completeWithQazkomPayment(postbackXml);
+    }
+
+    // a bank retry of a postback that has just been completed
+    @Benchmark
+    public void completeWithQazkomPaymentRetried() throws Exception {
+	fixture.facade.completeWithQazkomPayment(postbackXml);
+	fixture.facade.completeWithQazkomPayment(postbackXml);
+    }
+
+    // PRIVATE
+
+    private static String required(final String property) {
+	final String value = System.getProperty(property);
+	if (value == null)
+	    throw new IllegalStateException("System property '" + property + "' is required");
+	return value;
+    }
+
+    private String attribute(final Pattern pattern) {
+	final Matcher m = pattern.matcher(postbackXml);
+	if (!m.find())
+	    throw new IllegalStateException("Postback has no " + pattern.pattern());
+	return m.group(1);
+    }
+}